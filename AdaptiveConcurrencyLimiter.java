@@ -0,0 +1,185 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * PixelCheck - Adaptive concurrency limiter
+ * AIMD limit on concurrent requests to a backend: the limit grows by about
+ * one per round trip while latency stays healthy, and is cut
+ * multiplicatively when the backend throttles (429/5xx) or latency climbs
+ * past the tolerance. Callers block in acquire() while the limit is
+ * reached, so throughput settles at what the backend sustains without a
+ * hand-tuned thread count.
+ *
+ * Latency is healthy while the mean of the last few requests stays within
+ * the tolerance of the long-run mean. LLM calls range from short answers to
+ * max_tokens completions, so comparing single requests with the fastest one
+ * seen would read a long completion as congestion.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // Recent successes averaged before comparing with the baseline
+    private static final int WINDOW = 32;
+    // Successes the long-run baseline averages over once warmed up
+    private static final int BASELINE_SAMPLES = 256;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long baselineSamples;
+    private final long[] recentNanos = new long[WINDOW];
+    private long recentSum;
+    private int recentCount;
+    private int recentNext;
+    private long lastDecreaseNanos;
+
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong slow = new AtomicLong();
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+            double latencyTolerance, double backoffRatio) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Creates a limiter configured through pixelcheck.&lt;prefix&gt;.* system
+     * properties: initialConcurrency, minConcurrency, maxConcurrency,
+     * latencyTolerance and backoffRatio
+     */
+    public static AdaptiveConcurrencyLimiter fromSystemProperties(String name, String prefix) {
+        String base = "pixelcheck." + prefix + ".";
+        return new AdaptiveConcurrencyLimiter(name,
+                Integer.getInteger(base + "initialConcurrency", 4),
+                Integer.getInteger(base + "minConcurrency", 1),
+                Integer.getInteger(base + "maxConcurrency", 32),
+                Double.parseDouble(System.getProperty(base + "latencyTolerance", "2.0")),
+                Double.parseDouble(System.getProperty(base + "backoffRatio", "0.5")));
+    }
+
+    /**
+     * Waits for a slot and returns the start time to pass to the
+     * matching onSuccess/onThrottled/onIgnored call
+     */
+    public long acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Request completed normally: grow the limit while latency is healthy,
+     * back off gently when it is not
+     */
+    public void onSuccess(long startNanos) {
+        onSuccess(startNanos, System.nanoTime());
+    }
+
+    void onSuccess(long startNanos, long now) {
+        long latency = now - startNanos;
+        lock.lock();
+        try {
+            release();
+            // Short window: mean of the last WINDOW successes
+            recentSum += latency - recentNanos[recentNext];
+            recentNanos[recentNext] = latency;
+            recentNext = (recentNext + 1) % WINDOW;
+            recentCount = Math.min(recentCount + 1, WINDOW);
+            // Baseline: running mean, then an exponential average over
+            // BASELINE_SAMPLES, so a permanently slower backend is accepted
+            baselineSamples = Math.min(baselineSamples + 1, BASELINE_SAMPLES);
+            baselineNanos = baselineNanos == Long.MAX_VALUE
+                    ? latency
+                    : baselineNanos + (latency - baselineNanos) / baselineSamples;
+            if (recentCount >= WINDOW && recentSum / WINDOW > baselineNanos * latencyTolerance) {
+                slow.incrementAndGet();
+                decrease(now, Math.max(backoffRatio, 0.9));
+            } else if (inFlight + 1 >= (int) limit / 2) {
+                // Additive increase: about +1 per limit's worth of requests
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Backend rejected the request as overloaded (429/5xx, timeout)
+     */
+    public void onThrottled(long startNanos) {
+        throttled.incrementAndGet();
+        lock.lock();
+        try {
+            release();
+            decrease(System.nanoTime(), backoffRatio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Request failed for a reason unrelated to load
+     */
+    public void onIgnored(long startNanos) {
+        lock.lock();
+        try {
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        inFlight--;
+        available.signalAll();
+    }
+
+    /**
+     * Multiplicative decrease, at most once per baseline round trip so one
+     * burst of rejections does not collapse the limit
+     */
+    private void decrease(long now, double ratio) {
+        long window = baselineNanos == Long.MAX_VALUE ? TimeUnit.SECONDS.toNanos(1) : baselineNanos;
+        if (now - lastDecreaseNanos < window) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        limit = Math.max(minLimit, limit * ratio);
+    }
+
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String stats() {
+        return String.format("%s: concurrency limit %.1f (%d-%d), %d throttled, %d slow", name, getLimit(),
+                minLimit, maxLimit, throttled.get(), slow.get());
+    }
+}
@@ -0,0 +1,474 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Batch mode
+ * Runs analyzeAndMapPlatforms over a manifest of (android, ios, web) Figma
+ * URL triples on a bounded work-stealing pool. Each Figma design (file or
+ * node) is analyzed once per platform no matter how many triples reference
+ * it (and held in memory only until the last of those triples finishes),
+ * and every triple's records are streamed to a ResultSink (NDJSON, gzip
+ * when the output ends in .gz) as soon as it completes.
+ *
+ * Manifest formats:
+ *   CSV     id,android_url,ios_url,web_url   (id column optional, # comments allowed)
+ *   NDJSON  {"id": "...", "android": "...", "ios": "...", "web": "..."}
+ *
+ * Concurrency: -Dpixelcheck.batch.parallelism (default: available cores).
+ * Figma version checks are trusted for 5 minutes unless
+ * -Dpixelcheck.cache.versionTtlSeconds says otherwise.
+ * QuickML calls are further bounded by the adaptive QuickML concurrency limit.
+ * The run ends with a PipelineMetrics summary of per-stage latencies and
+ * request counters.
+ *
+ * Regression runs: -Dpixelcheck.batch.report=FILE appends the run's
+ * wall-clock time, throughput and allocation to FILE and compares them
+ * with the previous entry, e.g. replaying the same TrafficArchive on the
+ * last release and on the current build.
+ */
+public class BatchRunner {
+
+    /**
+     * One (android, ios, web) triple from the manifest
+     */
+    static class Triple {
+        final String id;
+        final String androidUrl;
+        final String iosUrl;
+        final String webUrl;
+
+        Triple(String id, String androidUrl, String iosUrl, String webUrl) {
+            this.id = id;
+            this.androidUrl = androidUrl;
+            this.iosUrl = iosUrl;
+            this.webUrl = webUrl;
+        }
+    }
+
+    // How long a Figma version check is trusted during a batch
+    private static final long BATCH_VERSION_TTL_SECONDS = 300;
+
+    private static final String[] PLATFORMS = { "Android", "iOS", "Web" };
+
+    private final String figmaAccessToken;
+    private final ExecutorService executor;
+
+    // Per-design platform analyses shared by all triples: "fileKey#nodeId|platform" -> analysis
+    private final ConcurrentHashMap<String, CompletableFuture<JSONObject>> analyses = new ConcurrentHashMap<>();
+
+    // Triples yet to finish with each analysis; the analysis is dropped when its count reaches 0
+    private final ConcurrentHashMap<String, AtomicInteger> pendingReaders = new ConcurrentHashMap<>();
+
+    private final AtomicInteger analysisReuses = new AtomicInteger();
+
+    public BatchRunner(String figmaAccessToken, int parallelism) {
+        this.figmaAccessToken = figmaAccessToken;
+        this.executor = Executors.newWorkStealingPool(parallelism);
+    }
+
+    /**
+     * Reads a CSV or NDJSON manifest
+     */
+    public static List<Triple> readManifest(Path manifest) throws IOException {
+        List<Triple> triples = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                if (trimmed.startsWith("{")) {
+                    JSONObject entry = new JSONObject(trimmed);
+                    triples.add(new Triple(entry.optString("id", "line-" + lineNumber),
+                            entry.getString("android"), entry.getString("ios"), entry.getString("web")));
+                    continue;
+                }
+                if (!trimmed.contains("://")) {
+                    continue; // header row
+                }
+                String[] columns = trimmed.split("\\s*,\\s*");
+                if (columns.length == 3) {
+                    triples.add(new Triple("line-" + lineNumber, columns[0], columns[1], columns[2]));
+                } else if (columns.length == 4) {
+                    triples.add(new Triple(columns[0], columns[1], columns[2], columns[3]));
+                } else {
+                    throw new IOException("Manifest line " + lineNumber + ": expected 3 or 4 columns");
+                }
+            }
+        }
+        return triples;
+    }
+
+    /**
+     * Runs every triple and streams its analyses, mapping and outcome to
+     * the sink as they complete. Returns the number of failed triples.
+     */
+    public int run(List<Triple> triples, ResultSink sink) throws Exception {
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        AllocationMeter allocation = AllocationMeter.start();
+        long allocated;
+
+        for (Triple triple : triples) {
+            for (String key : analysisKeys(triple)) {
+                pendingReaders.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+
+        try {
+            List<CompletableFuture<Void>> runs = new ArrayList<>();
+            for (Triple triple : triples) {
+                runs.add(CompletableFuture.runAsync(() -> {
+                    boolean success = runTriple(triple, sink);
+                    if (!success) {
+                        failed.incrementAndGet();
+                    }
+                    System.out.println((success ? "✓ " : "❌ ") + "[" + completed.incrementAndGet() + "/"
+                            + triples.size() + "] " + triple.id);
+                }, executor));
+            }
+            CompletableFuture.allOf(runs.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            // Read before the pool's threads (and their allocation counters) go away
+            allocated = allocation.stop();
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nBatch complete: %d triples, %d failed, %d analyses reused, %.1fs (%.2f triples/s), "
+                + "%d MB allocated%n", triples.size(), failed.get(), analysisReuses.get(), seconds,
+                triples.size() / seconds, allocated >> 20);
+
+        String report = System.getProperty("pixelcheck.batch.report");
+        if (report != null) {
+            JSONObject metrics = new JSONObject();
+            metrics.put("timestamp", Instant.now().toString());
+            metrics.put("triples", triples.size());
+            metrics.put("failed", failed.get());
+            metrics.put("wallClockSeconds", seconds);
+            metrics.put("triplesPerSecond", triples.size() / seconds);
+            metrics.put("allocatedBytes", allocated);
+            appendReport(Paths.get(report), metrics);
+        }
+        return failed.get();
+    }
+
+    /**
+     * Heap bytes allocated by the whole JVM between start() and stop(),
+     * including threads that have exited since. Uses
+     * ThreadMXBean#getTotalThreadAllocatedBytes on JDK 21+; older JDKs
+     * count the growth in heap use plus what each GC reclaimed in between.
+     */
+    static final class AllocationMeter {
+        private final com.sun.management.ThreadMXBean threads;
+        private final Method totalAllocated;
+        private final long before;
+        private final AtomicLong reclaimed = new AtomicLong();
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private final NotificationListener listener = (notification, handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                GcInfo gc = GarbageCollectionNotificationInfo
+                        .from((CompositeData) notification.getUserData()).getGcInfo();
+                Map<String, MemoryUsage> after = gc.getMemoryUsageAfterGc();
+                for (Map.Entry<String, MemoryUsage> pool : gc.getMemoryUsageBeforeGc().entrySet()) {
+                    MemoryUsage usage = after.get(pool.getKey());
+                    if (usage != null && isHeapPool(pool.getKey())) {
+                        reclaimed.addAndGet(Math.max(0, pool.getValue().getUsed() - usage.getUsed()));
+                    }
+                }
+            }
+        };
+
+        private AllocationMeter() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            threads = bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+            Method total = null;
+            if (threads != null && threads.isThreadAllocatedMemorySupported()
+                    && threads.isThreadAllocatedMemoryEnabled()) {
+                try {
+                    total = com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+                } catch (NoSuchMethodException e) {
+                    // JDK 17-20: fall back to GC accounting
+                }
+            }
+            totalAllocated = total;
+            if (totalAllocated == null) {
+                for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                    if (gc instanceof NotificationEmitter) {
+                        ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+                        emitters.add((NotificationEmitter) gc);
+                    }
+                }
+            }
+            before = reading();
+        }
+
+        static AllocationMeter start() {
+            return new AllocationMeter();
+        }
+
+        /**
+         * Bytes allocated since start(), or -1 when the JVM cannot tell
+         */
+        long stop() {
+            long after = reading();
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(listener);
+                } catch (ListenerNotFoundException e) {
+                    // Already gone
+                }
+            }
+            if (before < 0 || after < 0) {
+                return -1;
+            }
+            return after - before + (totalAllocated == null ? reclaimed.get() : 0);
+        }
+
+        private long reading() {
+            if (totalAllocated == null) {
+                return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            }
+            try {
+                return (Long) totalAllocated.invoke(threads);
+            } catch (ReflectiveOperationException e) {
+                return -1;
+            }
+        }
+
+        private static boolean isHeapPool(String name) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getName().equals(name)) {
+                    return pool.getType() == MemoryType.HEAP;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Appends a run's metrics to the report and prints how they compare
+     * with the previous run in it
+     */
+    static void appendReport(Path report, JSONObject metrics) throws IOException {
+        JSONObject previous = null;
+        if (Files.exists(report)) {
+            List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+            for (int i = lines.size() - 1; i >= 0 && previous == null; i--) {
+                if (!lines.get(i).isBlank()) {
+                    previous = new JSONObject(lines.get(i));
+                }
+            }
+        }
+        Files.writeString(report, metrics + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+
+        if (previous != null) {
+            System.out.printf("vs previous run (%s): wall-clock %s, throughput %s, allocation %s%n",
+                    previous.optString("timestamp", "?"),
+                    change(previous.optDouble("wallClockSeconds"), metrics.getDouble("wallClockSeconds")),
+                    change(previous.optDouble("triplesPerSecond"), metrics.getDouble("triplesPerSecond")),
+                    change(previous.optDouble("allocatedBytes"), metrics.getDouble("allocatedBytes")));
+        }
+        System.out.println("✓ Run metrics appended to " + report);
+    }
+
+    private static String change(double before, double after) {
+        if (!(before > 0) || after < 0) {
+            return "n/a";
+        }
+        return String.format("%+.1f%%", (after - before) / before * 100);
+    }
+
+    /**
+     * Analyzes and maps one triple; failures become an error record
+     */
+    private boolean runTriple(Triple triple, ResultSink sink) {
+        long runStart = System.nanoTime();
+        List<FigmaUrl> designs = null;
+        try {
+            long start = System.nanoTime();
+            designs = parseDesigns(triple);
+            PipelineMetrics.KEY_EXTRACTION.observeSince(start);
+            List<CompletableFuture<JSONObject>> pending = new ArrayList<>();
+            for (int i = 0; i < PLATFORMS.length; i++) {
+                pending.add(analysis(designs.get(i), PLATFORMS[i], designs));
+            }
+            JSONObject android = await(pending.get(0));
+            JSONObject ios = await(pending.get(1));
+            JSONObject web = await(pending.get(2));
+            sink.writeAnalysis(triple.id, PLATFORMS[0], android);
+            sink.writeAnalysis(triple.id, PLATFORMS[1], ios);
+            sink.writeAnalysis(triple.id, PLATFORMS[2], web);
+
+            sink.writeMapping(triple.id, PixelCheckComponentMapper.mapComponentsAcrossPlatforms(android, ios, web));
+            sink.writeSuccess(triple.id);
+            PipelineMetrics.RUNS.increment();
+            return true;
+        } catch (Exception e) {
+            PipelineMetrics.RUN_FAILURES.increment();
+            try {
+                sink.writeFailure(triple.id, e.getMessage() == null ? e.toString() : e.getMessage());
+            } catch (IOException writeError) {
+                throw new UncheckedIOException(writeError);
+            }
+            return false;
+        } finally {
+            if (designs != null) {
+                for (int i = 0; i < PLATFORMS.length; i++) {
+                    release(analysisKey(designs.get(i), PLATFORMS[i]));
+                }
+            }
+            PipelineMetrics.RUN.observeSince(runStart);
+        }
+    }
+
+    private static List<FigmaUrl> parseDesigns(Triple triple) throws Exception {
+        return List.of(FigmaUrl.parse(triple.androidUrl), FigmaUrl.parse(triple.iosUrl),
+                FigmaUrl.parse(triple.webUrl));
+    }
+
+    private static String analysisKey(FigmaUrl design, String platform) {
+        return design.scopeKey() + "|" + platform;
+    }
+
+    /**
+     * Analysis keys a triple will read; none when its URLs do not parse,
+     * since runTriple then fails before starting any analysis
+     */
+    private static List<String> analysisKeys(Triple triple) {
+        List<String> keys = new ArrayList<>();
+        try {
+            List<FigmaUrl> designs = parseDesigns(triple);
+            for (int i = 0; i < PLATFORMS.length; i++) {
+                keys.add(analysisKey(designs.get(i), PLATFORMS[i]));
+            }
+        } catch (Exception e) {
+            keys.clear();
+        }
+        return keys;
+    }
+
+    /**
+     * Called once per key by each finished triple; the last one drops the
+     * analysis so a long batch does not keep every result in memory
+     */
+    private void release(String key) {
+        AtomicInteger readers = pendingReaders.get(key);
+        if (readers != null && readers.decrementAndGet() <= 0) {
+            pendingReaders.remove(key, readers);
+            analyses.remove(key);
+        }
+    }
+
+    /**
+     * Returns the shared analysis of a design for a platform, starting it
+     * on first use
+     */
+    private CompletableFuture<JSONObject> analysis(FigmaUrl design, String platform, List<FigmaUrl> run) {
+        String key = analysisKey(design, platform);
+        CompletableFuture<JSONObject> existing = analyses.get(key);
+        if (existing != null) {
+            analysisReuses.incrementAndGet();
+            return existing;
+        }
+        CompletableFuture<JSONObject> created = new CompletableFuture<>();
+        existing = analyses.putIfAbsent(key, created);
+        if (existing != null) {
+            analysisReuses.incrementAndGet();
+            return existing;
+        }
+        // A failed analysis is forgotten so later triples retry it rather than inherit a transient error
+        created.whenComplete((result, error) -> {
+            if (error != null) {
+                analyses.remove(key, created);
+            }
+        });
+        PixelCheckComponentMapper.TASK_EXECUTOR.execute(() -> {
+            try {
+                created.complete(PixelCheckComponentMapper.analyzePlatform(design, platform, figmaAccessToken, run));
+            } catch (Exception e) {
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+
+    private static JSONObject await(CompletableFuture<JSONObject> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new Exception(cause);
+        }
+    }
+
+    /**
+     * Usage: java BatchRunner &lt;figma_token&gt; &lt;manifest&gt; [output]
+     */
+    public static void main(String[] args) throws Exception {
+        // A batch reads the same files many times within minutes; trust version checks for a while.
+        // The cache already exists by now (PixelCheckComponentMapper --batch), so set it directly.
+        FigmaFileCache figmaCache = PixelCheckComponentMapper.figmaCache();
+        if (figmaCache != null && System.getProperty("pixelcheck.cache.versionTtlSeconds") == null) {
+            figmaCache.setVersionTtl(BATCH_VERSION_TTL_SECONDS);
+        }
+        if (args.length < 2) {
+            System.out.println("Usage: java BatchRunner <figma_token> <manifest.csv|manifest.ndjson> [output.ndjson]");
+            return;
+        }
+        Path manifest = Paths.get(args[1]);
+        Path output = args.length > 2 ? Paths.get(args[2]) : ResultSink.outputPath("pixelcheck_batch_results.ndjson");
+        int parallelism = Integer.getInteger("pixelcheck.batch.parallelism", Runtime.getRuntime().availableProcessors());
+
+        List<Triple> triples = readManifest(manifest);
+        System.out.println("=== PixelCheck Batch: " + triples.size() + " triples, parallelism " + parallelism
+                + " ===\n");
+        int failed;
+        try (ResultSink sink = ResultSink.open(output)) {
+            failed = new BatchRunner(args[0], parallelism).run(triples, sink);
+        }
+        System.out.println("✓ Results streamed to " + output);
+        PixelCheckComponentMapper.printStats();
+        System.out.println(PipelineMetrics.summary());
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,458 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Deterministic cross-platform matcher
+ * Maps the obvious component triples locally using normalized types, an
+ * equivalence table (search_bar ≈ search_icon ≈ search_input) and label
+ * similarity, so only the ambiguous leftovers need an LLM mapping call.
+ * Follows the traditional + LLM merge idea of src/utils/hybridAnalyzer.js.
+ *
+ * Configuration:
+ *   -Dpixelcheck.matcher.equivalences=path   equivalence table, one group per line:
+ *                                            "search = search_bar = search_icon"
+ *   -Dpixelcheck.matcher.threshold=0.85      minimum label similarity for fuzzy matches
+ */
+public class ComponentMatcher {
+
+    static final String[] PLATFORMS = { "android", "ios", "web" };
+    static final String[] PLATFORM_NAMES = { "Android", "iOS", "Web" };
+
+    // First entry of each group is the canonical type
+    private static final String[] DEFAULT_EQUIVALENCES = {
+            "search = search_bar = search_icon = search_input = search_field = search_box",
+            "button = submit_button = primary_button = secondary_button = action_button = cta = fab",
+            "date_picker = date_selector = date_input = calendar",
+            "time_picker = time_selector = time_input",
+            "input_field = text_field = text_input = textbox = text_area = edit_text",
+            "dropdown = select = picker = spinner = combo_box",
+            "checkbox = check_box",
+            "radio = radio_button",
+            "switch = toggle = toggle_switch",
+            "navigation = tab_bar = bottom_navigation = nav_bar = navbar = tab",
+            "toolbar = app_bar = header = navigation_bar",
+            "icon = icon_button = image_icon",
+            "link = hyperlink = text_link",
+            "text = label = heading = title = paragraph",
+    };
+
+    // Words that describe the widget rather than what it is for
+    private static final Set<String> LABEL_STOPWORDS = new HashSet<>(Arrays.asList(
+            "button", "btn", "icon", "bar", "field", "input", "box", "the", "a", "an", "ic"));
+
+    // Shorter normalized labels (unlabeled icons, "Icon", "OK") say too little
+    // to match on; such components are left to the LLM
+    private static final int MIN_LABEL_LENGTH = 3;
+
+    private final Map<String, String> canonicalTypes;
+    private final double threshold;
+
+    public ComponentMatcher(Map<String, String> canonicalTypes, double threshold) {
+        this.canonicalTypes = canonicalTypes;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates a matcher from the configured (or built-in) equivalence table
+     */
+    public static ComponentMatcher fromSystemProperties() {
+        List<String> lines = new ArrayList<>(Arrays.asList(DEFAULT_EQUIVALENCES));
+        String tableFile = System.getProperty("pixelcheck.matcher.equivalences");
+        if (tableFile != null) {
+            try {
+                lines = Files.readAllLines(Paths.get(tableFile), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not read equivalence table " + tableFile
+                        + ", using built-in table: " + e.getMessage());
+            }
+        }
+        double threshold = Double.parseDouble(System.getProperty("pixelcheck.matcher.threshold", "0.85"));
+        return new ComponentMatcher(parseEquivalences(lines), threshold);
+    }
+
+    /**
+     * Parses "canonical = alias = alias" lines; blank lines and # comments are ignored
+     */
+    static Map<String, String> parseEquivalences(List<String> lines) {
+        Map<String, String> table = new HashMap<>();
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] members = trimmed.split("[=≈]");
+            String canonical = normalizeType(members[0]);
+            for (String member : members) {
+                table.put(normalizeType(member), canonical);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Outcome of local matching: confident mappings plus the components that
+     * still need the LLM, per platform in the analysis format
+     */
+    public static class Result {
+        final JSONArray mappings = new JSONArray();
+        final JSONObject[] leftovers = new JSONObject[PLATFORMS.length];
+
+        public JSONArray getMappings() {
+            return mappings;
+        }
+
+        public JSONObject getLeftovers(int platform) {
+            return leftovers[platform];
+        }
+
+        int leftoverCount(int platform) {
+            return leftovers[platform].getJSONArray("components").length();
+        }
+
+        /**
+         * The LLM is only worth asking when at least two platforms still have
+         * unmatched components
+         */
+        public boolean needsLLM() {
+            int platformsWithLeftovers = 0;
+            for (int p = 0; p < PLATFORMS.length; p++) {
+                if (leftoverCount(p) > 0) {
+                    platformsWithLeftovers++;
+                }
+            }
+            return platformsWithLeftovers >= 2;
+        }
+
+        /**
+         * Combines the local mappings with the LLM's mapping of the leftovers
+         * (null when the LLM was not needed) into the usual mapping format
+         */
+        public JSONObject merge(JSONObject llmMapping) {
+            JSONArray all = new JSONArray();
+            for (int i = 0; i < mappings.length(); i++) {
+                all.put(mappings.get(i));
+            }
+
+            JSONArray missing = new JSONArray();
+            JSONArray inconsistencies = new JSONArray();
+            int llmCount = 0;
+            int unmapped = 0;
+            if (llmMapping != null && llmMapping.optJSONArray("mappings") == null) {
+                // The LLM mapping failed: report the leftovers as unmapped rather than drop them
+                for (int p = 0; p < PLATFORMS.length; p++) {
+                    JSONArray components = leftovers[p].getJSONArray("components");
+                    for (int i = 0; i < components.length(); i++) {
+                        JSONObject component = components.getJSONObject(i);
+                        JSONObject mapping = new JSONObject();
+                        mapping.put("purpose", purposeOf(component));
+                        mapping.put(PLATFORMS[p], platformEntry(component));
+                        mapping.put("consistency", "unmapped");
+                        mapping.put("notes", "Not mapped: the LLM mapping of unmatched components failed");
+                        mapping.put("matchedBy", "none");
+                        all.put(mapping);
+                        unmapped++;
+                    }
+                }
+            } else if (llmMapping != null) {
+                JSONArray llmMappings = llmMapping.optJSONArray("mappings");
+                if (llmMappings != null) {
+                    for (int i = 0; i < llmMappings.length(); i++) {
+                        JSONObject mapping = llmMappings.optJSONObject(i);
+                        if (mapping != null) {
+                            mapping.put("matchedBy", "llm");
+                            all.put(mapping);
+                            llmCount++;
+                        }
+                    }
+                }
+                JSONObject llmSummary = llmMapping.optJSONObject("summary");
+                if (llmSummary != null) {
+                    copyInto(llmSummary.optJSONArray("missing_on_platforms"), missing);
+                    copyInto(llmSummary.optJSONArray("inconsistencies"), inconsistencies);
+                }
+            } else {
+                // A single platform's leftovers have no counterpart anywhere
+                for (int p = 0; p < PLATFORMS.length; p++) {
+                    JSONArray components = leftovers[p].getJSONArray("components");
+                    for (int i = 0; i < components.length(); i++) {
+                        JSONObject component = components.getJSONObject(i);
+                        JSONObject mapping = new JSONObject();
+                        mapping.put("purpose", purposeOf(component));
+                        mapping.put(PLATFORMS[p], platformEntry(component));
+                        mapping.put("consistency", "missing");
+                        mapping.put("notes", "Only found on " + PLATFORM_NAMES[p]);
+                        mapping.put("matchedBy", "local");
+                        all.put(mapping);
+                        missing.put(component.optString("name", component.optString("id")) + " (only on "
+                                + PLATFORM_NAMES[p] + ")");
+                    }
+                }
+            }
+
+            int consistent = 0;
+            for (int i = 0; i < all.length(); i++) {
+                if ("equivalent".equals(all.getJSONObject(i).optString("consistency"))) {
+                    consistent++;
+                }
+            }
+
+            JSONObject summary = new JSONObject();
+            summary.put("total_mappings", all.length());
+            summary.put("consistent_components", consistent);
+            summary.put("missing_on_platforms", missing);
+            summary.put("inconsistencies", inconsistencies);
+            summary.put("resolved_locally", mappings.length());
+            summary.put("resolved_by_llm", llmCount);
+            if (unmapped > 0) {
+                summary.put("unmapped", unmapped);
+            }
+
+            JSONObject result = new JSONObject();
+            result.put("mappings", all);
+            result.put("summary", summary);
+            if (llmMapping != null && llmMapping.has("error")) {
+                result.put("llmError", llmMapping.getString("error"));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Matches components across the three platform analyses. Returns null if
+     * any analysis has no component list (e.g. its LLM output was unparseable).
+     */
+    public Result match(JSONObject android, JSONObject ios, JSONObject web) {
+        JSONObject[] analyses = { android, ios, web };
+        List<List<Candidate>> platforms = new ArrayList<>();
+        for (JSONObject analysis : analyses) {
+            JSONArray components = analysis.optJSONArray("components");
+            if (components == null) {
+                return null;
+            }
+            List<Candidate> candidates = new ArrayList<>();
+            for (int i = 0; i < components.length(); i++) {
+                JSONObject component = components.optJSONObject(i);
+                if (component != null) {
+                    candidates.add(new Candidate(component));
+                }
+            }
+            platforms.add(candidates);
+        }
+
+        Result result = new Result();
+        matchExact(platforms, result);
+        matchFuzzy(platforms, result);
+
+        for (int p = 0; p < PLATFORMS.length; p++) {
+            JSONArray remaining = new JSONArray();
+            for (Candidate candidate : platforms.get(p)) {
+                if (!candidate.matched) {
+                    remaining.put(candidate.component);
+                }
+            }
+            JSONObject leftover = new JSONObject();
+            leftover.put("platform", PLATFORM_NAMES[p]);
+            leftover.put("components", remaining);
+            result.leftovers[p] = leftover;
+        }
+        return result;
+    }
+
+    /**
+     * Triples whose canonical type and normalized label are identical and
+     * unique on every platform
+     */
+    private void matchExact(List<List<Candidate>> platforms, Result result) {
+        List<Map<String, List<Candidate>>> byKey = new ArrayList<>();
+        for (List<Candidate> candidates : platforms) {
+            Map<String, List<Candidate>> index = new LinkedHashMap<>();
+            for (Candidate candidate : candidates) {
+                if (!candidate.matchable()) {
+                    continue;
+                }
+                index.computeIfAbsent(candidate.key(), k -> new ArrayList<>()).add(candidate);
+            }
+            byKey.add(index);
+        }
+
+        for (Map.Entry<String, List<Candidate>> entry : byKey.get(0).entrySet()) {
+            List<Candidate> ios = byKey.get(1).get(entry.getKey());
+            List<Candidate> web = byKey.get(2).get(entry.getKey());
+            if (entry.getValue().size() == 1 && ios != null && ios.size() == 1 && web != null && web.size() == 1) {
+                addMapping(result, entry.getValue().get(0), ios.get(0), web.get(0), 1.0);
+            }
+        }
+    }
+
+    /**
+     * Triples of the same canonical type whose labels are pairwise similar
+     * and that are each other's best match
+     */
+    private void matchFuzzy(List<List<Candidate>> platforms, Result result) {
+        for (Candidate android : platforms.get(0)) {
+            if (android.matched || !android.matchable()) {
+                continue;
+            }
+            Candidate ios = bestMatch(android, platforms.get(1));
+            Candidate web = bestMatch(android, platforms.get(2));
+            if (ios == null || web == null) {
+                continue;
+            }
+            if (bestMatch(ios, platforms.get(0)) != android || bestMatch(web, platforms.get(0)) != android) {
+                continue;
+            }
+            double iosWeb = similarity(ios.label, web.label);
+            if (iosWeb < threshold) {
+                continue;
+            }
+            double confidence = Math.min(iosWeb, Math.min(similarity(android.label, ios.label),
+                    similarity(android.label, web.label)));
+            addMapping(result, android, ios, web, confidence);
+        }
+    }
+
+    private Candidate bestMatch(Candidate source, List<Candidate> targets) {
+        Candidate best = null;
+        double bestScore = threshold;
+        for (Candidate target : targets) {
+            if (target.matched || !target.matchable() || !target.canonicalType.equals(source.canonicalType)) {
+                continue;
+            }
+            double score = similarity(source.label, target.label);
+            if (score >= bestScore && (best == null || score > bestScore)) {
+                best = target;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static void addMapping(Result result, Candidate android, Candidate ios, Candidate web,
+            double confidence) {
+        android.matched = true;
+        ios.matched = true;
+        web.matched = true;
+
+        JSONObject mapping = new JSONObject();
+        mapping.put("purpose", purposeOf(android.component));
+        mapping.put("android", platformEntry(android.component));
+        mapping.put("ios", platformEntry(ios.component));
+        mapping.put("web", platformEntry(web.component));
+        mapping.put("consistency", "equivalent");
+        mapping.put("notes", "Matched locally by type and label");
+        mapping.put("confidence", Math.round(confidence * 100) / 100.0);
+        mapping.put("matchedBy", "local");
+        result.mappings.put(mapping);
+    }
+
+    private static JSONObject platformEntry(JSONObject component) {
+        JSONObject entry = new JSONObject();
+        entry.put("id", component.optString("id"));
+        entry.put("type", component.optString("type"));
+        entry.put("name", component.optString("name"));
+        entry.put("implementation", component.optString("purpose", component.optString("type")));
+        return entry;
+    }
+
+    private static String purposeOf(JSONObject component) {
+        String label = component.optString("text", "");
+        if (label.isBlank()) {
+            label = component.optString("name", component.optString("type", "component"));
+        }
+        return (normalizeType(component.optString("type", "component")) + "_" + normalizeType(label))
+                .replaceAll("_+", "_");
+    }
+
+    /**
+     * One component with its precomputed match keys
+     */
+    private final class Candidate {
+        final JSONObject component;
+        final String canonicalType;
+        final String label;
+        boolean matched;
+
+        Candidate(JSONObject component) {
+            this.component = component;
+            String type = normalizeType(component.optString("type", ""));
+            this.canonicalType = canonicalTypes.getOrDefault(type, type);
+            String text = component.optString("text", "");
+            this.label = normalizeLabel(text.isBlank() ? component.optString("name", "") : text);
+        }
+
+        String key() {
+            return canonicalType + "|" + label;
+        }
+
+        boolean matchable() {
+            return label.length() >= MIN_LABEL_LENGTH;
+        }
+    }
+
+    static String normalizeType(String type) {
+        return type.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    static String normalizeLabel(String label) {
+        StringBuilder normalized = new StringBuilder();
+        for (String word : label.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty() && !LABEL_STOPWORDS.contains(word)) {
+                if (normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(word);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Dice coefficient over character bigrams
+     */
+    static double similarity(String a, String b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0.0;
+        }
+        if (a.equals(b)) {
+            return 1.0;
+        }
+        if (a.length() < 2 || b.length() < 2) {
+            return 0.0;
+        }
+        Map<String, Integer> bigrams = new HashMap<>();
+        for (int i = 0; i < a.length() - 1; i++) {
+            bigrams.merge(a.substring(i, i + 2), 1, Integer::sum);
+        }
+        int overlap = 0;
+        for (int i = 0; i < b.length() - 1; i++) {
+            String bigram = b.substring(i, i + 2);
+            Integer count = bigrams.get(bigram);
+            if (count != null && count > 0) {
+                bigrams.put(bigram, count - 1);
+                overlap++;
+            }
+        }
+        return 2.0 * overlap / (a.length() - 1 + b.length() - 1);
+    }
+
+    private static void copyInto(JSONArray source, JSONArray target) {
+        if (source != null) {
+            for (int i = 0; i < source.length(); i++) {
+                target.put(source.get(i));
+            }
+        }
+    }
+}
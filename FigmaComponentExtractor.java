@@ -0,0 +1,434 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Local component extraction
+ * Walks a Figma node tree and keeps only interactive and text-bearing nodes,
+ * each with its page/frame path, producing a compact inventory that is sent
+ * to the LLM instead of the raw document. Vectors, shapes, fills and effects
+ * never reach the prompt. Mirrors src/utils/hierarchical-extractor.js and
+ * detailedExtractor.js on the web side.
+ */
+public class FigmaComponentExtractor {
+
+    private static final int MAX_TEXT_LENGTH = 80;
+    private static final int MAX_PATH_SEGMENTS = 6;
+    private static final int MAX_LABEL_DEPTH = 4;
+
+    // Interactive controls: emitted with their label, children not walked. Keywords match whole
+    // words of the layer name (see words()) or their plural, so "tab" does not match "Table".
+    private static final String[][] CONTROL_KEYWORDS = {
+            { "search", "search" },
+            { "searchbar", "search" },
+            { "button", "button" },
+            { "btn", "button" },
+            { "cta", "button" },
+            { "fab", "button" },
+            { "input", "input_field" },
+            { "textfield", "text_field" },
+            { "text field", "text_field" },
+            { "field", "input_field" },
+            { "dropdown", "dropdown" },
+            { "picker", "picker" },
+            { "checkbox", "checkbox" },
+            { "radio", "radio" },
+            { "switch", "switch" },
+            { "toggle", "switch" },
+            { "slider", "slider" },
+            { "stepper", "stepper" },
+            { "link", "link" },
+    };
+
+    // Navigation containers: emitted and walked, their items are components too
+    private static final String[][] CONTAINER_KEYWORDS = {
+            { "tab bar", "tab_bar" },
+            { "tabbar", "tab_bar" },
+            { "bottom nav", "navigation" },
+            { "navbar", "navigation" },
+            { "navigation", "navigation" },
+            { "app bar", "toolbar" },
+            { "appbar", "toolbar" },
+            { "toolbar", "toolbar" },
+            { "header", "header" },
+            { "menu", "menu" },
+            { "tab", "tab" },
+            { "chip", "chip" },
+    };
+
+    /**
+     * One extracted component
+     */
+    public static class Component {
+        String id;
+        String kind;
+        String figmaType;
+        String name;
+        String text;
+        String path;
+        String page;
+        String frameId;
+        String frameName;
+        long structureHash;
+        int repeats = 1;
+
+        public String getId() {
+            return id;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getFrameId() {
+            return frameId;
+        }
+
+        public String getFrameName() {
+            return frameName;
+        }
+
+        public long getStructureHash() {
+            return structureHash;
+        }
+
+        /**
+         * Copy standing for the given number of structurally identical
+         * components
+         */
+        public Component withRepeats(int count) {
+            Component copy = new Component();
+            copy.id = id;
+            copy.kind = kind;
+            copy.figmaType = figmaType;
+            copy.name = name;
+            copy.text = text;
+            copy.path = path;
+            copy.page = page;
+            copy.frameId = frameId;
+            copy.frameName = frameName;
+            copy.structureHash = structureHash;
+            copy.repeats = count;
+            return copy;
+        }
+
+        public JSONObject toJSON() {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("kind", kind);
+            json.put("name", name);
+            if (text != null) {
+                json.put("text", text);
+            }
+            json.put("path", path);
+            if (repeats > 1) {
+                json.put("repeats", repeats);
+            }
+            return json;
+        }
+    }
+
+    /**
+     * Extracted components of one document plus the size of the source tree
+     */
+    public static class Inventory {
+        final List<Component> components = new ArrayList<>();
+        int nodeCount;
+
+        public List<Component> getComponents() {
+            return components;
+        }
+
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        public JSONObject toJSON(String platform) {
+            JSONObject json = new JSONObject();
+            json.put("platform", platform);
+            json.put("componentCount", components.size());
+            JSONArray list = new JSONArray();
+            for (Component component : components) {
+                list.put(component.toJSON());
+            }
+            json.put("components", list);
+            return json;
+        }
+    }
+
+    /**
+     * Extracts the component inventory of a document (or any subtree)
+     */
+    public static Inventory extract(FigmaNode root) {
+        Inventory inventory = new Inventory();
+        walk(root, new ArrayList<>(), null, null, null, inventory);
+        return inventory;
+    }
+
+    private static void walk(FigmaNode node, List<String> path, String page, String frameId, String frameName,
+            Inventory inventory) {
+        inventory.nodeCount++;
+        if (!node.visible) {
+            return;
+        }
+
+        String type = node.type == null ? "" : node.type;
+        String name = node.name == null ? "" : node.name;
+
+        // Pages and top-level screens scope the components below them
+        if (type.equals("CANVAS")) {
+            page = name;
+        } else if (frameId == null && isScreen(type)) {
+            frameId = node.id;
+            frameName = name;
+        }
+        if (!type.equals("DOCUMENT")) {
+            path.add(name);
+        }
+
+        try {
+            if (type.equals("TEXT")) {
+                if (node.characters != null && !node.characters.isBlank()) {
+                    inventory.components.add(component(node, "text", truncate(node.characters), path, page,
+                            frameId, frameName));
+                }
+                return;
+            }
+
+            String lowerName = name.toLowerCase(Locale.ROOT);
+            String words = words(name);
+            String controlKind = match(words, CONTROL_KEYWORDS);
+            if (controlKind != null && !isScreenRoot(node, frameId)) {
+                inventory.components.add(component(node, controlKind, findLabel(node, 0), path, page, frameId,
+                        frameName));
+                inventory.nodeCount += countDescendants(node);
+                return;
+            }
+            if (isIcon(node, type, lowerName)) {
+                inventory.components.add(component(node, "icon", null, path, page, frameId, frameName));
+                inventory.nodeCount += countDescendants(node);
+                return;
+            }
+            if (isShape(type)) {
+                inventory.nodeCount += countDescendants(node);
+                return;
+            }
+
+            String containerKind = match(words, CONTAINER_KEYWORDS);
+            if (containerKind != null && !isScreenRoot(node, frameId)) {
+                inventory.components.add(component(node, containerKind, null, path, page, frameId, frameName));
+            } else if (type.equals("INSTANCE")) {
+                inventory.components.add(component(node, "instance", null, path, page, frameId, frameName));
+            }
+
+            for (FigmaNode child : node.children) {
+                walk(child, path, page, frameId, frameName, inventory);
+            }
+        } finally {
+            if (!type.equals("DOCUMENT")) {
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    private static Component component(FigmaNode node, String kind, String text, List<String> path, String page,
+            String frameId, String frameName) {
+        Component component = new Component();
+        component.id = node.id;
+        component.kind = kind;
+        component.figmaType = node.type;
+        component.name = node.name;
+        component.text = text;
+        component.path = formatPath(path);
+        component.page = page;
+        component.frameId = frameId;
+        component.frameName = frameName;
+        component.structureHash = node.structureHash;
+        return component;
+    }
+
+    /**
+     * First visible text inside a control, used as its label
+     */
+    private static String findLabel(FigmaNode node, int depth) {
+        if (depth > MAX_LABEL_DEPTH) {
+            return null;
+        }
+        for (FigmaNode child : node.children) {
+            if (!child.visible) {
+                continue;
+            }
+            if ("TEXT".equals(child.type) && child.characters != null && !child.characters.isBlank()) {
+                return truncate(child.characters);
+            }
+            String label = findLabel(child, depth + 1);
+            if (label != null) {
+                return label;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A layer name as lower-case words separated by single spaces, split at
+     * spaces, punctuation (- _ / : ...) and camelCase or letter/digit
+     * boundaries: "TabBar/Active_2" becomes "tab bar active 2"
+     */
+    static String words(String name) {
+        StringBuilder words = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                if (words.length() > 0 && words.charAt(words.length() - 1) != ' ') {
+                    words.append(' ');
+                }
+                continue;
+            }
+            if (i > 0 && words.length() > 0 && words.charAt(words.length() - 1) != ' '
+                    && startsWord(name, i)) {
+                words.append(' ');
+            }
+            words.append(Character.toLowerCase(c));
+        }
+        int end = words.length();
+        if (end > 0 && words.charAt(end - 1) == ' ') {
+            words.setLength(end - 1);
+        }
+        return words.toString();
+    }
+
+    /**
+     * camelCase ("tabBar"), acronym ("HTMLInput") and letter/digit boundaries
+     */
+    private static boolean startsWord(String name, int i) {
+        char previous = name.charAt(i - 1);
+        char c = name.charAt(i);
+        if (Character.isDigit(c) != Character.isDigit(previous)) {
+            return true;
+        }
+        if (Character.isUpperCase(c)) {
+            return Character.isLowerCase(previous) || Character.isUpperCase(previous) && i + 1 < name.length()
+                    && Character.isLowerCase(name.charAt(i + 1));
+        }
+        return false;
+    }
+
+    /**
+     * Kind of the first keyword found as whole words (or their plural) in
+     * the output of words()
+     */
+    private static String match(String words, String[][] keywords) {
+        for (String[] keyword : keywords) {
+            String word = keyword[0];
+            for (int at = words.indexOf(word); at >= 0; at = words.indexOf(word, at + 1)) {
+                int end = at + word.length();
+                if (end < words.length() && words.charAt(end) == 's') {
+                    end++;
+                }
+                if ((at == 0 || words.charAt(at - 1) == ' ') && (end == words.length() || words.charAt(end) == ' ')) {
+                    return keyword[1];
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isScreen(String type) {
+        return type.equals("FRAME") || type.equals("COMPONENT") || type.equals("COMPONENT_SET")
+                || type.equals("INSTANCE");
+    }
+
+    /**
+     * A screen named e.g. "Search Results" is a scope, not a search control
+     */
+    private static boolean isScreenRoot(FigmaNode node, String frameId) {
+        return node.id != null && node.id.equals(frameId);
+    }
+
+    // Largest side (px) of a slash- or colon-named node still taken for an icon
+    private static final double MAX_ICON_SIZE = 48;
+
+    /**
+     * Icons by name ("icon", "ic_"), or library paths like "Arrows/Left"
+     * that are vector-only and icon-sized; "Card/Flight" or
+     * "Button/Primary" are ordinary instances whose content is kept
+     */
+    private static boolean isIcon(FigmaNode node, String type, String lowerName) {
+        boolean vectorLike = type.equals("VECTOR") || type.equals("BOOLEAN_OPERATION") || type.equals("INSTANCE")
+                || type.equals("COMPONENT") || type.equals("GROUP") || type.equals("FRAME");
+        if (!vectorLike) {
+            return false;
+        }
+        if (lowerName.contains("icon") || lowerName.startsWith("ic_")) {
+            return true;
+        }
+        return !type.equals("FRAME") && (lowerName.contains(":") || lowerName.contains("/"))
+                && (!node.hasBounds || Math.max(node.width, node.height) <= MAX_ICON_SIZE)
+                && !hasText(node);
+    }
+
+    private static boolean hasText(FigmaNode node) {
+        for (FigmaNode child : node.children) {
+            if ("TEXT".equals(child.type) || hasText(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isShape(String type) {
+        switch (type) {
+            case "VECTOR":
+            case "BOOLEAN_OPERATION":
+            case "RECTANGLE":
+            case "ELLIPSE":
+            case "LINE":
+            case "STAR":
+            case "REGULAR_POLYGON":
+            case "SLICE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int countDescendants(FigmaNode node) {
+        int count = 0;
+        for (FigmaNode child : node.children) {
+            count += 1 + countDescendants(child);
+        }
+        return count;
+    }
+
+    /**
+     * Joins the path, eliding the middle of very deep paths
+     */
+    private static String formatPath(List<String> path) {
+        if (path.size() <= MAX_PATH_SEGMENTS) {
+            return String.join(" > ", path);
+        }
+        List<String> shortened = new ArrayList<>(path.subList(0, 2));
+        shortened.add("…");
+        shortened.addAll(path.subList(path.size() - (MAX_PATH_SEGMENTS - 3), path.size()));
+        return String.join(" > ", shortened);
+    }
+
+    private static String truncate(String text) {
+        String trimmed = text.strip().replaceAll("\\s+", " ");
+        return trimmed.length() <= MAX_TEXT_LENGTH ? trimmed : trimmed.substring(0, MAX_TEXT_LENGTH - 1) + "…";
+    }
+}
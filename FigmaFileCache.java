@@ -0,0 +1,192 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * PixelCheck - Persistent Figma file cache
+ * Stores gzip-compressed Figma file bodies on disk, addressed by a hash of
+ * the file key and Figma's file version. A cached body stays valid for as
+ * long as the file's version does not change, so unchanged files are never
+ * downloaded twice.
+ *
+ * Configuration:
+ *   -Dpixelcheck.cache.dir=.pixelcheck-cache          cache root directory
+ *   -Dpixelcheck.cache.enabled=false                  disable the cache
+ *   -Dpixelcheck.cache.versionTtlSeconds=0            how long a version check is trusted
+ *                                                     without asking Figma again (BatchRunner
+ *                                                     defaults to 300 via setVersionTtl)
+ *
+ * Trusted versions are recorded per access token: a cached body is only
+ * served without a request when the same token checked the file's version
+ * within the TTL, so in server mode a caller cannot read a cached file its
+ * own token has no access to.
+ */
+public class FigmaFileCache {
+
+    private static final String VERSION_SUFFIX = ".version";
+    private static final String BODY_SUFFIX = ".json.gz";
+
+    private final Path directory;
+    private volatile long versionTtlMillis;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public FigmaFileCache(Path directory, long versionTtlSeconds) throws IOException {
+        this.directory = directory;
+        this.versionTtlMillis = versionTtlSeconds * 1000;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Changes how long a version check is trusted; 0 always asks Figma
+     */
+    public void setVersionTtl(long seconds) {
+        versionTtlMillis = seconds * 1000;
+    }
+
+    public long getVersionTtlSeconds() {
+        return versionTtlMillis / 1000;
+    }
+
+    /**
+     * Creates the cache configured through system properties, or returns null
+     * when caching is disabled
+     */
+    public static FigmaFileCache fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("pixelcheck.cache.enabled", "true"))) {
+            return null;
+        }
+        Path root = Paths.get(System.getProperty("pixelcheck.cache.dir", ".pixelcheck-cache"));
+        try {
+            return new FigmaFileCache(root.resolve("figma"),
+                    Long.getLong("pixelcheck.cache.versionTtlSeconds", 0));
+        } catch (IOException e) {
+            System.err.println("Warning: Figma cache disabled, cannot create " + root + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the last version this token saw for a file if it was checked
+     * recently enough to be trusted without a metadata request, otherwise null
+     */
+    public String recentVersion(String fileKey, String accessToken) {
+        if (versionTtlMillis <= 0) {
+            return null;
+        }
+        Path versionFile = versionPath(fileKey, accessToken);
+        if (!Files.exists(versionFile)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(versionFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        long checkedAt = Long.parseLong(properties.getProperty("checkedAt", "0"));
+        if (System.currentTimeMillis() - checkedAt > versionTtlMillis) {
+            return null;
+        }
+        return properties.getProperty("version");
+    }
+
+    /**
+     * Records the version Figma reported for a file to this token
+     */
+    public void rememberVersion(String fileKey, String accessToken, String version) {
+        Properties properties = new Properties();
+        properties.setProperty("version", version);
+        properties.setProperty("checkedAt", Long.toString(System.currentTimeMillis()));
+        try {
+            Path temp = Files.createTempFile(directory, "version", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, fileKey);
+            }
+            Files.move(temp, versionPath(fileKey, accessToken),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not record Figma version for " + fileKey + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the cached body of a file version, or returns null on a miss
+     */
+    public InputStream open(String fileKey, String version) throws IOException {
+        Path entry = entryPath(fileKey, version);
+        if (!Files.exists(entry)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(entry), 65536), 65536);
+    }
+
+    /**
+     * Streams a downloaded body into the cache and returns a stream over the
+     * stored copy. The entry only becomes visible once it is complete.
+     */
+    public InputStream store(String fileKey, String version, InputStream body) throws IOException {
+        Path entry = entryPath(fileKey, version);
+        Path temp = Files.createTempFile(directory, "body", ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 65536)) {
+                body.transferTo(out);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(entry), 65536), 65536);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Content address of a file version: SHA-256 of "fileKey@version"
+     */
+    private Path entryPath(String fileKey, String version) {
+        return directory.resolve(sha256(fileKey + "@" + version) + BODY_SUFFIX);
+    }
+
+    private Path versionPath(String fileKey, String accessToken) {
+        return directory.resolve(safeName(fileKey) + "." + sha256(accessToken.trim()).substring(0, 16)
+                + VERSION_SUFFIX);
+    }
+
+    private static String safeName(String fileKey) {
+        return fileKey.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Compact Figma node
+ * Holds only the node fields PixelCheck needs (id, name, type, text,
+ * componentId, visibility, bounding box and children) instead of the full Figma tree.
+ */
+public class FigmaNode {
+
+    String id;
+    String name;
+    String type;
+    String characters;
+    String componentId;
+    boolean visible = true;
+
+    // absoluteBoundingBox
+    boolean hasBounds;
+    double x;
+    double y;
+    double width;
+    double height;
+
+    // Structural subtree hash, set by StructureMemo.hashTree
+    long structureHash;
+
+    final List<FigmaNode> children = new ArrayList<>();
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getCharacters() {
+        return characters;
+    }
+
+    public String getComponentId() {
+        return componentId;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public List<FigmaNode> getChildren() {
+        return children;
+    }
+
+    /**
+     * Finds the node with the given id in this subtree, or null
+     */
+    public FigmaNode find(String nodeId) {
+        ArrayDeque<FigmaNode> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            FigmaNode node = pending.pop();
+            if (nodeId.equals(node.id)) {
+                return node;
+            }
+            for (FigmaNode child : node.children) {
+                pending.push(child);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts this subtree to JSON using Figma's field names
+     */
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("name", name);
+        json.put("type", type);
+        if (characters != null) {
+            json.put("characters", characters);
+        }
+        if (componentId != null) {
+            json.put("componentId", componentId);
+        }
+        if (!visible) {
+            json.put("visible", false);
+        }
+        if (hasBounds) {
+            JSONObject box = new JSONObject();
+            box.put("x", x);
+            box.put("y", y);
+            box.put("width", width);
+            box.put("height", height);
+            json.put("absoluteBoundingBox", box);
+        }
+        if (!children.isEmpty()) {
+            JSONArray childArray = new JSONArray();
+            for (FigmaNode child : children) {
+                childArray.put(child.toJSON());
+            }
+            json.put("children", childArray);
+        }
+        return json;
+    }
+
+    /**
+     * Builds a compact node tree from a full Figma JSON node
+     */
+    public static FigmaNode fromJSON(JSONObject json) {
+        FigmaNode node = new FigmaNode();
+        node.id = json.optString("id", null);
+        node.name = json.optString("name", null);
+        node.type = json.optString("type", null);
+        node.characters = json.optString("characters", null);
+        node.componentId = json.optString("componentId", null);
+        node.visible = json.optBoolean("visible", true);
+
+        JSONObject box = json.optJSONObject("absoluteBoundingBox");
+        if (box != null) {
+            node.hasBounds = true;
+            node.x = box.optDouble("x", 0);
+            node.y = box.optDouble("y", 0);
+            node.width = box.optDouble("width", 0);
+            node.height = box.optDouble("height", 0);
+        }
+
+        JSONArray children = json.optJSONArray("children");
+        if (children != null) {
+            for (int i = 0; i < children.length(); i++) {
+                JSONObject child = children.optJSONObject(i);
+                if (child != null) {
+                    node.children.add(fromJSON(child));
+                }
+            }
+        }
+        return node;
+    }
+}
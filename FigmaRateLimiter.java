@@ -0,0 +1,189 @@
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * PixelCheck - Figma API rate limiting
+ * One token bucket per Figma access token, since Figma's limits are per
+ * token. Requests over the rate queue in FIFO order per token instead of
+ * failing; a 429 pauses the token until its Retry-After has passed.
+ * Several tokens in one process (e.g. different teams in the server) get
+ * independent buckets and an equal share of the concurrent request slots,
+ * so one busy token cannot starve the others.
+ *
+ * Configuration: -Dpixelcheck.figma.requestsPerMinute (default 60),
+ * -Dpixelcheck.figma.burst (default 10), -Dpixelcheck.figma.maxConcurrency
+ * (default 8, shared by all tokens).
+ */
+public class FigmaRateLimiter {
+
+    /**
+     * Rate-limit state of one access token
+     */
+    private static class Bucket {
+        double tokens;
+        long lastRefillNanos;
+        long pausedUntilNanos;
+        int inFlight;
+        final ArrayDeque<Thread> queue = new ArrayDeque<>();
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefillNanos = now;
+        }
+    }
+
+    private final double tokensPerNano;
+    private final int burst;
+    private final int maxConcurrency;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // Guarded by lock; keyed by the SHA-256 of the token so secrets are not kept as map keys
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private int inFlight;
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    public FigmaRateLimiter(double requestsPerMinute, int burst, int maxConcurrency) {
+        this.tokensPerNano = requestsPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    public static FigmaRateLimiter fromSystemProperties() {
+        return new FigmaRateLimiter(
+                Double.parseDouble(System.getProperty("pixelcheck.figma.requestsPerMinute", "60")),
+                Integer.getInteger("pixelcheck.figma.burst", 10),
+                Integer.getInteger("pixelcheck.figma.maxConcurrency", 8));
+    }
+
+    /**
+     * Waits until the token may send one more request
+     */
+    public void acquire(String accessToken) throws InterruptedException {
+        String key = FigmaFileCache.sha256(accessToken);
+        Thread self = Thread.currentThread();
+        lock.lockInterruptibly();
+        try {
+            long now = System.nanoTime();
+            Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(burst, now));
+            bucket.queue.addLast(self);
+            boolean waited = false;
+            try {
+                while (true) {
+                    long wait = waitNanos(bucket, self, System.nanoTime());
+                    if (wait == 0) {
+                        break;
+                    }
+                    waited = true;
+                    changed.awaitNanos(wait);
+                }
+            } catch (InterruptedException e) {
+                bucket.queue.remove(self);
+                changed.signalAll();
+                throw e;
+            }
+            if (waited) {
+                queued.incrementAndGet();
+            }
+            bucket.queue.removeFirst();
+            bucket.tokens -= 1;
+            bucket.inFlight++;
+            inFlight++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Nanoseconds until the caller may proceed, 0 when it may go now
+     */
+    private long waitNanos(Bucket bucket, Thread self, long now) {
+        refill(bucket, now);
+        if (bucket.queue.peekFirst() != self) {
+            return TimeUnit.SECONDS.toNanos(1);
+        }
+        if (now < bucket.pausedUntilNanos) {
+            return bucket.pausedUntilNanos - now;
+        }
+        if (bucket.tokens < 1) {
+            return Math.max(1, (long) ((1 - bucket.tokens) / tokensPerNano));
+        }
+        if (inFlight >= maxConcurrency || bucket.inFlight >= fairShare()) {
+            return TimeUnit.SECONDS.toNanos(1);
+        }
+        return 0;
+    }
+
+    /**
+     * Concurrent slots one token may hold while other tokens are active
+     */
+    private int fairShare() {
+        int active = 0;
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.inFlight > 0 || !bucket.queue.isEmpty()) {
+                active++;
+            }
+        }
+        return Math.max(1, maxConcurrency / Math.max(1, active));
+    }
+
+    private void refill(Bucket bucket, long now) {
+        if (now <= bucket.lastRefillNanos) {
+            return; // paused: refilling starts when the pause ends
+        }
+        bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.lastRefillNanos) * tokensPerNano);
+        bucket.lastRefillNanos = now;
+    }
+
+    /**
+     * The request sent after acquire() has its response
+     */
+    public void release(String accessToken) {
+        lock.lock();
+        try {
+            Bucket bucket = buckets.get(FigmaFileCache.sha256(accessToken));
+            if (bucket != null) {
+                bucket.inFlight--;
+            }
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Figma rejected the token's request: hold back all of its requests
+     * for the given delay, then let one request through and refill from
+     * there
+     */
+    public void pause(String accessToken, long delayMillis) {
+        throttled.incrementAndGet();
+        lock.lock();
+        try {
+            Bucket bucket = buckets.get(FigmaFileCache.sha256(accessToken));
+            if (bucket != null) {
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+                bucket.pausedUntilNanos = Math.max(bucket.pausedUntilNanos, until);
+                bucket.tokens = 1;
+                bucket.lastRefillNanos = bucket.pausedUntilNanos;
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String stats() {
+        return String.format("Figma rate limit: %d requests queued, %d throttled", queued.get(), throttled.get());
+    }
+}
@@ -0,0 +1,414 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PixelCheck - Streaming Figma document parser
+ * Pull-parses a Figma API response straight from the response stream and
+ * builds only the {@link FigmaNode} fields PixelCheck uses. Everything else
+ * (vectors, fills, effects, styles, ...) is skipped without being
+ * materialized, so peak heap stays proportional to the kept nodes rather
+ * than to the size of the document.
+ */
+public class FigmaStreamingParser {
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+    private final StringBuilder scratch = new StringBuilder();
+
+    private FigmaStreamingParser(InputStream in) {
+        this.reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a GET /v1/files/{key} response and returns its document node
+     */
+    public static FigmaNode parseFile(InputStream in) throws IOException {
+        FigmaStreamingParser parser = new FigmaStreamingParser(in);
+        FigmaNode document = null;
+
+        parser.expect('{');
+        String name;
+        while ((name = parser.nextName()) != null) {
+            if (name.equals("document")) {
+                document = parser.readNode();
+            } else {
+                parser.skipValue();
+            }
+        }
+
+        if (document == null) {
+            throw new IOException("Figma response has no document");
+        }
+        return document;
+    }
+
+    /**
+     * Parses a GET /v1/files/{key}/nodes?ids= response and returns the
+     * document node of each requested id (ids Figma could not find map to
+     * null in the response and are left out)
+     */
+    public static Map<String, FigmaNode> parseNodes(InputStream in) throws IOException {
+        FigmaStreamingParser parser = new FigmaStreamingParser(in);
+        Map<String, FigmaNode> nodes = null;
+
+        parser.expect('{');
+        String name;
+        while ((name = parser.nextName()) != null) {
+            if (name.equals("nodes") && parser.peekNonWhitespace() == '{') {
+                nodes = new LinkedHashMap<>();
+                parser.pos++;
+                String id;
+                while ((id = parser.nextName()) != null) {
+                    if (parser.peekNonWhitespace() != '{') {
+                        parser.skipValue();
+                        continue;
+                    }
+                    parser.pos++;
+                    String field;
+                    while ((field = parser.nextName()) != null) {
+                        if (field.equals("document")) {
+                            nodes.put(id, parser.readNode());
+                        } else {
+                            parser.skipValue();
+                        }
+                    }
+                }
+            } else {
+                parser.skipValue();
+            }
+        }
+
+        if (nodes == null) {
+            throw new IOException("Figma response has no nodes");
+        }
+        return nodes;
+    }
+
+    /**
+     * Reads one node object including its children
+     */
+    private FigmaNode readNode() throws IOException {
+        FigmaNode node = new FigmaNode();
+        expect('{');
+        String name;
+        while ((name = nextName()) != null) {
+            switch (name) {
+                case "id":
+                    node.id = readNullableString();
+                    break;
+                case "name":
+                    node.name = readNullableString();
+                    break;
+                case "type":
+                    node.type = readNullableString();
+                    break;
+                case "characters":
+                    node.characters = readNullableString();
+                    break;
+                case "componentId":
+                    node.componentId = readNullableString();
+                    break;
+                case "visible":
+                    node.visible = readBoolean(true);
+                    break;
+                case "absoluteBoundingBox":
+                    readBounds(node);
+                    break;
+                case "children":
+                    readChildren(node);
+                    break;
+                default:
+                    skipValue();
+            }
+        }
+        return node;
+    }
+
+    private void readChildren(FigmaNode node) throws IOException {
+        if (peekNonWhitespace() != '[') {
+            skipValue();
+            return;
+        }
+        pos++;
+        while (nextElement()) {
+            if (peekNonWhitespace() == '{') {
+                node.children.add(readNode());
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    private void readBounds(FigmaNode node) throws IOException {
+        if (peekNonWhitespace() != '{') {
+            skipValue();
+            return;
+        }
+        pos++;
+        node.hasBounds = true;
+        String name;
+        while ((name = nextName()) != null) {
+            switch (name) {
+                case "x":
+                    node.x = readNumber();
+                    break;
+                case "y":
+                    node.y = readNumber();
+                    break;
+                case "width":
+                    node.width = readNumber();
+                    break;
+                case "height":
+                    node.height = readNumber();
+                    break;
+                default:
+                    skipValue();
+            }
+        }
+    }
+
+    // ---- Tokenizer ----
+
+    /**
+     * Returns the next member name of the current object, or null once the
+     * closing brace has been consumed
+     */
+    private String nextName() throws IOException {
+        int c = nextNonWhitespace();
+        if (c == ',') {
+            c = nextNonWhitespace();
+        }
+        if (c == '}') {
+            return null;
+        }
+        if (c != '"') {
+            throw syntaxError("Expected member name");
+        }
+        String name = readString();
+        if (nextNonWhitespace() != ':') {
+            throw syntaxError("Expected ':'");
+        }
+        return name;
+    }
+
+    /**
+     * Moves to the next element of the current array; false once the
+     * closing bracket has been consumed
+     */
+    private boolean nextElement() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == ',') {
+            pos++;
+            c = peekNonWhitespace();
+        }
+        if (c == ']') {
+            pos++;
+            return false;
+        }
+        if (c == -1) {
+            throw syntaxError("Unterminated array");
+        }
+        return true;
+    }
+
+    private String readNullableString() throws IOException {
+        if (peekNonWhitespace() == '"') {
+            pos++;
+            return readString();
+        }
+        skipValue();
+        return null;
+    }
+
+    private boolean readBoolean(boolean defaultValue) throws IOException {
+        int c = peekNonWhitespace();
+        skipValue();
+        if (c == 't') {
+            return true;
+        }
+        if (c == 'f') {
+            return false;
+        }
+        return defaultValue;
+    }
+
+    private double readNumber() throws IOException {
+        int c = peekNonWhitespace();
+        if (c != '-' && (c < '0' || c > '9')) {
+            skipValue();
+            return 0;
+        }
+        scratch.setLength(0);
+        while ((c = peek()) != -1 && isLiteralChar(c)) {
+            scratch.append((char) c);
+            pos++;
+        }
+        try {
+            return Double.parseDouble(scratch.toString());
+        } catch (NumberFormatException e) {
+            throw syntaxError("Invalid number " + scratch);
+        }
+    }
+
+    /**
+     * Reads a string whose opening quote has already been consumed
+     */
+    private String readString() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return scratch.toString();
+            }
+            if (c == '\\') {
+                scratch.append(readEscape());
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else {
+                scratch.append((char) c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case -1:
+                throw syntaxError("Unterminated string");
+            default:
+                return (char) c;
+        }
+    }
+
+    /**
+     * Skips a string whose opening quote has already been consumed
+     */
+    private void skipString() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                read();
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    /**
+     * Skips the next value of any type without building it
+     */
+    private void skipValue() throws IOException {
+        int c = nextNonWhitespace();
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            int depth = 1;
+            while (depth > 0) {
+                c = read();
+                if (c == '"') {
+                    skipString();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                } else if (c == -1) {
+                    throw syntaxError("Unterminated value");
+                }
+            }
+        } else if (c == -1) {
+            throw syntaxError("Unexpected end of document");
+        } else {
+            while ((c = peek()) != -1 && isLiteralChar(c)) {
+                pos++;
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextNonWhitespace() != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+    }
+
+    private static boolean isLiteralChar(int c) {
+        return c != ',' && c != '}' && c != ']' && c != ':' && !isWhitespace(c);
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (isWhitespace(c));
+        return c;
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        int c;
+        while (isWhitespace(c = peek())) {
+            pos++;
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = count;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Invalid Figma JSON: " + message);
+    }
+}
@@ -0,0 +1,223 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Local Figma API stand-in
+ * Serves SyntheticFigmaFile documents through the Figma REST endpoints
+ * PixelCheck uses, so scale and load tests run without customer files:
+ *   GET /v1/files/{key}                 the whole file
+ *   GET /v1/files/{key}?depth=1         version metadata only
+ *   GET /v1/files/{key}/nodes?ids=a,b   the listed subtrees
+ *
+ * The file key selects what is generated: dash-separated presets and
+ * platforms on top of the base spec, e.g. "ios", "million-web" or
+ * "designSystem-android" (any valid key for a design URL such as
+ * https://www.figma.com/design/million-web/Test). Generated files are kept
+ * in memory per key.
+ *
+ * Run standalone with java FigmaStubServer [port] and point
+ * -Dpixelcheck.figma.apiBase at http://127.0.0.1:port/v1, or use
+ * -Dpixelcheck.figma.stub=true to start one inside the PixelCheck process.
+ *
+ * Configuration:
+ *   -Dpixelcheck.figmaStub.spec=medium       base SyntheticFigmaFile spec
+ *   -Dpixelcheck.figmaStub.latency=fixed:0   response latency, as pixelcheck.llmStub.latency
+ */
+public class FigmaStubServer {
+
+    private static final int DEFAULT_PORT = 8090;
+
+    private final HttpServer server;
+    private final SyntheticFigmaFile.Spec baseSpec;
+    private final LlmStubServer.Latency latency;
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, FigmaNode> documents = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    public FigmaStubServer(int port, SyntheticFigmaFile.Spec baseSpec, LlmStubServer.Latency latency)
+            throws IOException {
+        this.baseSpec = baseSpec;
+        this.latency = latency;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(PixelCheckComponentMapper.newTaskExecutor());
+    }
+
+    public static FigmaStubServer fromSystemProperties(int port) throws IOException {
+        return new FigmaStubServer(port,
+                SyntheticFigmaFile.Spec.parse(System.getProperty("pixelcheck.figmaStub.spec", "medium")),
+                LlmStubServer.Latency.parse(System.getProperty("pixelcheck.figmaStub.latency", "fixed:0")));
+    }
+
+    public void start() {
+        server.createContext("/v1/files/", this::handle);
+        server.start();
+        System.out.println("✓ Figma stub server listening on " + apiBase());
+    }
+
+    /**
+     * Starts the server without keeping the JVM alive
+     */
+    public void startDaemon() throws InterruptedException {
+        Thread starter = new Thread(this::start, "figma-stub-start");
+        starter.setDaemon(true);
+        starter.start();
+        starter.join();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Base URL to use in place of https://api.figma.com/v1
+     */
+    public String apiBase() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    /**
+     * Spec generated for a file key: the base spec with each dash-separated
+     * part applied as a platform or preset
+     */
+    SyntheticFigmaFile.Spec specFor(String fileKey) {
+        StringBuilder spec = new StringBuilder(baseSpec.toString());
+        String platform = null;
+        for (String part : fileKey.split("-")) {
+            if (java.util.Arrays.asList(SyntheticFigmaFile.PLATFORMS).contains(part.toLowerCase())) {
+                platform = part.toLowerCase();
+            } else if (!part.isEmpty()) {
+                spec.append(',').append(part);
+            }
+        }
+        SyntheticFigmaFile.Spec result = SyntheticFigmaFile.Spec.parse(spec.toString());
+        return platform == null ? result : result.withPlatform(platform);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            String path = exchange.getRequestURI().getPath().substring("/v1/files/".length());
+            String query = exchange.getRequestURI().getRawQuery();
+            boolean nodes = path.endsWith("/nodes");
+            String fileKey = nodes ? path.substring(0, path.length() - "/nodes".length()) : path;
+
+            SyntheticFigmaFile.Spec spec;
+            try {
+                spec = specFor(fileKey);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 404, new JSONObject().put("status", 404).put("err", e.getMessage())
+                        .toString().getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            long delay = latency.sampleMillis();
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            if (nodes) {
+                send(exchange, 200, nodes(fileKey, spec, queryParameter(query, "ids")));
+            } else if ("1".equals(queryParameter(query, "depth"))) {
+                JSONObject meta = new JSONObject();
+                meta.put("name", "Synthetic " + spec.platform);
+                meta.put("version", SyntheticFigmaFile.version(spec));
+                meta.put("lastModified", "2024-01-01T00:00:00Z");
+                send(exchange, 200, meta.toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                send(exchange, 200, file(fileKey, spec));
+            }
+        } catch (Exception e) {
+            send(exchange, 500, new JSONObject().put("status", 500).put("err", String.valueOf(e.getMessage()))
+                    .toString().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] file(String fileKey, SyntheticFigmaFile.Spec spec) {
+        return files.computeIfAbsent(fileKey,
+                k -> SyntheticFigmaFile.generate(spec).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * GET /v1/files/{key}/nodes response; unknown ids map to null as in Figma
+     */
+    private byte[] nodes(String fileKey, SyntheticFigmaFile.Spec spec, String ids) throws IOException {
+        FigmaNode document = documents.get(fileKey);
+        if (document == null) {
+            document = FigmaStreamingParser.parseFile(new ByteArrayInputStream(file(fileKey, spec)));
+            documents.putIfAbsent(fileKey, document);
+        }
+
+        JSONObject nodes = new JSONObject();
+        if (ids != null) {
+            for (String id : ids.split(",")) {
+                FigmaNode node = document.find(id.trim());
+                if (node == null) {
+                    nodes.put(id.trim(), JSONObject.NULL);
+                } else {
+                    JSONObject entry = new JSONObject();
+                    entry.put("document", node.toJSON());
+                    entry.put("components", new JSONObject());
+                    nodes.put(id.trim(), entry);
+                }
+            }
+        }
+        JSONObject response = new JSONObject();
+        response.put("name", "Synthetic " + spec.platform);
+        response.put("version", SyntheticFigmaFile.version(spec));
+        response.put("lastModified", "2024-01-01T00:00:00Z");
+        response.put("nodes", nodes);
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String queryParameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int eq = parameter.indexOf('=');
+            if (eq > 0 && parameter.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(parameter.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public String stats() {
+        return String.format("Figma stub: %d requests, %d files generated", requests.get(), files.size());
+    }
+
+    /**
+     * Runs the stand-in standalone: java FigmaStubServer [port]
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        FigmaStubServer stub = fromSystemProperties(port);
+        stub.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stub.stop();
+            System.out.println(stub.stats());
+        }));
+    }
+}
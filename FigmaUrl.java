@@ -0,0 +1,98 @@
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * PixelCheck - Figma URL
+ * File key plus the node a design URL points at. Share links carry the
+ * frame in node-id (1-2 in the URL for node 1:2); older links scope to a
+ * page with page-id. Without either the URL means the whole file.
+ */
+public class FigmaUrl {
+
+    private final String fileKey;
+    private final String nodeId;
+
+    public FigmaUrl(String fileKey, String nodeId) {
+        this.fileKey = fileKey;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Parses https://www.figma.com/file|design/{fileKey}/{name}?node-id=1-2
+     */
+    public static FigmaUrl parse(String figmaUrl) throws Exception {
+        String path = figmaUrl;
+        String query = null;
+        int queryStart = figmaUrl.indexOf('?');
+        if (queryStart >= 0) {
+            path = figmaUrl.substring(0, queryStart);
+            query = figmaUrl.substring(queryStart + 1);
+            int fragment = query.indexOf('#');
+            if (fragment >= 0) {
+                query = query.substring(0, fragment);
+            }
+        }
+
+        String fileKey = null;
+        String[] parts = path.split("/");
+        for (int i = 0; i < parts.length; i++) {
+            if ((parts[i].equals("file") || parts[i].equals("design")) && i + 1 < parts.length) {
+                fileKey = parts[i + 1];
+                break;
+            }
+        }
+        if (fileKey == null || fileKey.isEmpty()) {
+            throw new Exception("Invalid Figma URL format");
+        }
+
+        String nodeId = queryParameter(query, "node-id");
+        if (nodeId == null) {
+            nodeId = queryParameter(query, "page-id");
+        }
+        return new FigmaUrl(fileKey, nodeId == null ? null : normalizeNodeId(nodeId));
+    }
+
+    private static String queryParameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int eq = parameter.indexOf('=');
+            if (eq > 0 && parameter.substring(0, eq).equals(name)) {
+                String value = URLDecoder.decode(parameter.substring(eq + 1), StandardCharsets.UTF_8).trim();
+                return value.isEmpty() ? null : value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * URLs write node 1:2 as 1-2 (or 1%3A2); the API expects 1:2
+     */
+    static String normalizeNodeId(String nodeId) {
+        return nodeId.indexOf(':') >= 0 ? nodeId : nodeId.replace('-', ':');
+    }
+
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    /**
+     * The referenced node, or null for the whole file
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Identifies the design this URL scopes to (file, or file and node)
+     */
+    public String scopeKey() {
+        return nodeId == null ? fileKey : fileKey + "#" + nodeId;
+    }
+
+    @Override
+    public String toString() {
+        return scopeKey();
+    }
+}
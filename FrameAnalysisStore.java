@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Per-frame analysis store
+ * Remembers the analyzed components of every frame under a content hash of
+ * the frame's inventory (what the LLM is shown for it). When a file is
+ * re-analyzed after an edit, frames whose hash is unchanged reuse their
+ * stored result and only the edited frames are sent to the LLM, so the cost
+ * follows the size of the edit rather than the size of the file.
+ *
+ * Stored in the append-only NDJSON format of the LLM response cache under
+ * &lt;cache dir&gt;/frames/analyses.ndjson.
+ *
+ * Configuration:
+ *   -Dpixelcheck.frameCache.enabled=false        always analyze every frame
+ *   -Dpixelcheck.frameCache.ttlSeconds=2592000   maximum age of a stored frame result
+ *   -Dpixelcheck.frameCache.maxEntries=5000      size of the in-memory tier
+ *   -Dpixelcheck.frameCache.maxIndexEntries=100000  frames of the on-disk tier indexed in memory
+ */
+public class FrameAnalysisStore {
+
+    private static final long DEFAULT_TTL_SECONDS = 30L * 24 * 3600;
+
+    private final LlmResponseCache store;
+    private final String salt;
+
+    private final AtomicLong reusedFrames = new AtomicLong();
+    private final AtomicLong analyzedFrames = new AtomicLong();
+
+    /**
+     * @param salt mixed into every frame hash (LLM client, model and prompt identity),
+     *             so a different analysis setup never reuses old results
+     */
+    public FrameAnalysisStore(LlmResponseCache store, String salt) {
+        this.store = store;
+        this.salt = FigmaFileCache.sha256(salt);
+    }
+
+    /**
+     * Creates the store configured through system properties, or returns
+     * null when it is disabled
+     */
+    public static FrameAnalysisStore fromSystemProperties(String salt) {
+        if (!Boolean.parseBoolean(System.getProperty("pixelcheck.frameCache.enabled", "true"))) {
+            return null;
+        }
+        Path root = Paths.get(System.getProperty("pixelcheck.cache.dir", ".pixelcheck-cache"));
+        try {
+            return new FrameAnalysisStore(new LlmResponseCache(root.resolve("frames").resolve("analyses.ndjson"),
+                    Long.getLong("pixelcheck.frameCache.ttlSeconds", DEFAULT_TTL_SECONDS),
+                    Integer.getInteger("pixelcheck.frameCache.maxEntries", 5000),
+                    Integer.getInteger("pixelcheck.frameCache.maxIndexEntries", 100_000),
+                    false), salt);
+        } catch (IOException e) {
+            System.err.println("Warning: frame cache disabled, cannot open store under " + root + ": "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Groups an inventory's components by frame, in document order
+     */
+    public static Map<String, List<FigmaComponentExtractor.Component>> framesOf(
+            FigmaComponentExtractor.Inventory inventory) {
+        Map<String, List<FigmaComponentExtractor.Component>> frames = new LinkedHashMap<>();
+        for (FigmaComponentExtractor.Component component : inventory.getComponents()) {
+            String frameId = component.getFrameId() == null ? "" : component.getFrameId();
+            frames.computeIfAbsent(frameId, k -> new ArrayList<>()).add(component);
+        }
+        return frames;
+    }
+
+    /**
+     * Content hash of one frame's inventory for a platform
+     */
+    public String frameHash(String platform, List<FigmaComponentExtractor.Component> components) {
+        StringBuilder content = new StringBuilder(salt).append('\n').append(platform).append('\n');
+        for (FigmaComponentExtractor.Component component : components) {
+            content.append(component.toJSON()).append('\n');
+        }
+        return FigmaFileCache.sha256(content.toString());
+    }
+
+    /**
+     * Stored components of a frame, or null when the frame must be analyzed
+     */
+    public JSONArray get(String frameHash) {
+        String stored = store.get(frameHash, false);
+        if (stored == null) {
+            return null;
+        }
+        reusedFrames.incrementAndGet();
+        return new JSONArray(stored);
+    }
+
+    /**
+     * Splits a fresh analysis of the given frames back into per-frame
+     * results and stores them. Components are attributed by id; ones the
+     * LLM returned without a known id go with the first frame.
+     */
+    public void putAll(Map<String, List<FigmaComponentExtractor.Component>> frames, Map<String, String> frameHashes,
+            JSONArray analyzedComponents) {
+        if (frames.isEmpty()) {
+            return;
+        }
+        Map<String, String> frameOfComponent = new HashMap<>();
+        Map<String, JSONArray> perFrame = new LinkedHashMap<>();
+        for (Map.Entry<String, List<FigmaComponentExtractor.Component>> frame : frames.entrySet()) {
+            perFrame.put(frame.getKey(), new JSONArray());
+            for (FigmaComponentExtractor.Component component : frame.getValue()) {
+                frameOfComponent.put(component.getId(), frame.getKey());
+            }
+        }
+        String firstFrame = frames.keySet().iterator().next();
+
+        for (int i = 0; i < analyzedComponents.length(); i++) {
+            JSONObject component = analyzedComponents.optJSONObject(i);
+            if (component == null) {
+                continue;
+            }
+            String frameId = frameOfComponent.getOrDefault(component.optString("id", ""), firstFrame);
+            perFrame.get(frameId).put(component);
+        }
+
+        for (Map.Entry<String, JSONArray> frame : perFrame.entrySet()) {
+            store.put(frameHashes.get(frame.getKey()), frame.getValue().toString());
+            analyzedFrames.incrementAndGet();
+        }
+    }
+
+    public String stats() {
+        return String.format("Frame cache: %d frames reused, %d frames analyzed", reusedFrames.get(),
+                analyzedFrames.get());
+    }
+}
@@ -0,0 +1,120 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * PixelCheck - Shared HTTP transport
+ * Keeps one long-lived HTTP/2 client per endpoint so Figma and QuickML calls
+ * reuse pooled connections, TLS sessions and multiplexed streams instead of
+ * paying a fresh handshake on every request.
+ *
+ * Timeouts are configurable per endpoint through system properties:
+ *   -Dpixelcheck.http.&lt;endpoint&gt;.connectTimeoutSeconds=10
+ *   -Dpixelcheck.http.&lt;endpoint&gt;.requestTimeoutSeconds=120
+ * and pre-warming with -Dpixelcheck.http.prewarm=true. Traffic can be
+ * recorded and replayed through TrafficArchive (pixelcheck.traffic.*).
+ */
+public class HttpTransport {
+
+    // Endpoint names
+    public static final String FIGMA = "figma";
+    public static final String QUICKML = "quickml";
+
+    private static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long DEFAULT_REQUEST_TIMEOUT_SECONDS = 120;
+
+    // Executor shared by all clients for async I/O and response handling
+    private static final ExecutorService EXECUTOR = PixelCheckComponentMapper.newTaskExecutor();
+
+    private static final Map<String, Endpoint> ENDPOINTS = new ConcurrentHashMap<>();
+
+    // Record/replay archive (null for plain network traffic)
+    private static final TrafficArchive ARCHIVE = TrafficArchive.fromSystemProperties();
+
+    /**
+     * Client and timeouts of one remote endpoint
+     */
+    private static final class Endpoint {
+        final HttpClient client;
+        final Duration requestTimeout;
+
+        Endpoint(String name) {
+            Duration connectTimeout = Duration.ofSeconds(Long.getLong(
+                    "pixelcheck.http." + name + ".connectTimeoutSeconds", DEFAULT_CONNECT_TIMEOUT_SECONDS));
+            this.requestTimeout = Duration.ofSeconds(Long.getLong(
+                    "pixelcheck.http." + name + ".requestTimeoutSeconds", DEFAULT_REQUEST_TIMEOUT_SECONDS));
+            this.client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(connectTimeout)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .executor(EXECUTOR)
+                    .build();
+        }
+    }
+
+    private static Endpoint endpoint(String name) {
+        return ENDPOINTS.computeIfAbsent(name, Endpoint::new);
+    }
+
+    /**
+     * Returns the shared client for an endpoint
+     */
+    public static HttpClient client(String endpoint) {
+        return endpoint(endpoint).client;
+    }
+
+    /**
+     * Starts a request builder with the endpoint's request timeout applied
+     */
+    public static HttpRequest.Builder newRequest(String endpoint, URI uri) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(endpoint(endpoint).requestTimeout);
+    }
+
+    /**
+     * Sends a request through the endpoint's shared client
+     */
+    public static <T> HttpResponse<T> send(String endpoint, HttpRequest request,
+            HttpResponse.BodyHandler<T> bodyHandler) throws Exception {
+        if (ARCHIVE != null) {
+            return ARCHIVE.send(endpoint, client(endpoint), request, bodyHandler);
+        }
+        return client(endpoint).send(request, bodyHandler);
+    }
+
+    /**
+     * Opens the connection to an endpoint ahead of time so the TLS handshake
+     * and HTTP/2 negotiation are done before the first real request.
+     * The response itself is ignored.
+     */
+    public static void prewarm(String endpoint, String url) {
+        if (ARCHIVE != null && ARCHIVE.isReplaying()) {
+            return;
+        }
+        HttpRequest request = newRequest(endpoint, URI.create(url))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        client(endpoint).sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .exceptionally(e -> null);
+    }
+
+    /**
+     * Whether connections should be pre-warmed at startup
+     */
+    public static boolean prewarmEnabled() {
+        return Boolean.getBoolean("pixelcheck.http.prewarm");
+    }
+
+    /**
+     * Record/replay statistics, or null when traffic is not archived
+     */
+    public static String trafficStats() {
+        return ARCHIVE == null ? null : ARCHIVE.stats();
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Token-budgeted inventory chunking
+ * Splits a component inventory by page/frame into pieces that each fit an
+ * input token budget, so large design files are analyzed as several
+ * prompts instead of one that overflows the model's context.
+ *
+ * Whole frames are kept together when they fit; a frame larger than the
+ * budget is split across consecutive chunks.
+ */
+public class InventoryChunker {
+
+    // Rough token estimate for English/JSON text
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /**
+     * One prompt-sized slice of an inventory
+     */
+    public static class Chunk {
+        final List<FigmaComponentExtractor.Component> components = new ArrayList<>();
+        int estimatedTokens;
+
+        public List<FigmaComponentExtractor.Component> getComponents() {
+            return components;
+        }
+
+        public int getEstimatedTokens() {
+            return estimatedTokens;
+        }
+
+        public JSONObject toJSON(String platform, int index, int total) {
+            JSONObject json = new JSONObject();
+            json.put("platform", platform);
+            if (total > 1) {
+                json.put("part", (index + 1) + "/" + total);
+            }
+            json.put("componentCount", components.size());
+            JSONArray list = new JSONArray();
+            for (FigmaComponentExtractor.Component component : components) {
+                list.put(component.toJSON());
+            }
+            json.put("components", list);
+            return json;
+        }
+    }
+
+    /**
+     * Estimated prompt tokens of a piece of text
+     */
+    public static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Splits an inventory into chunks of at most tokenBudget estimated tokens
+     */
+    public static List<Chunk> chunk(FigmaComponentExtractor.Inventory inventory, int tokenBudget) {
+        // Group components by their screen, keeping document order
+        Map<String, List<FigmaComponentExtractor.Component>> frames = new LinkedHashMap<>();
+        for (FigmaComponentExtractor.Component component : inventory.getComponents()) {
+            String scope = component.frameId != null ? component.frameId : "page:" + component.page;
+            frames.computeIfAbsent(scope, k -> new ArrayList<>()).add(component);
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        Chunk current = new Chunk();
+        for (List<FigmaComponentExtractor.Component> frame : frames.values()) {
+            int frameTokens = 0;
+            int[] componentTokens = new int[frame.size()];
+            for (int i = 0; i < frame.size(); i++) {
+                componentTokens[i] = estimateTokens(frame.get(i).toJSON().toString()) + 1;
+                frameTokens += componentTokens[i];
+            }
+
+            // Start a new chunk rather than splitting a frame that fits on its own
+            if (current.estimatedTokens + frameTokens > tokenBudget && frameTokens <= tokenBudget
+                    && !current.components.isEmpty()) {
+                chunks.add(current);
+                current = new Chunk();
+            }
+
+            for (int i = 0; i < frame.size(); i++) {
+                if (current.estimatedTokens + componentTokens[i] > tokenBudget && !current.components.isEmpty()) {
+                    chunks.add(current);
+                    current = new Chunk();
+                }
+                current.components.add(frame.get(i));
+                current.estimatedTokens += componentTokens[i];
+            }
+        }
+        if (!current.components.isEmpty() || chunks.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+}
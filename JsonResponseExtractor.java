@@ -0,0 +1,182 @@
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - JSON extraction from LLM responses
+ * Single-pass scanner that finds the first complete top-level JSON object
+ * in model output, skipping prose, string contents and code fences. When
+ * the output was cut off (max_tokens), the object is repaired by dropping
+ * the incomplete trailing element and closing the open arrays and objects,
+ * so a partial result is used instead of wasting the call.
+ */
+public class JsonResponseExtractor {
+
+    /**
+     * JSON text found in a response
+     */
+    static class Extraction {
+        final String json;
+        final boolean truncated;
+        JSONObject parsed;
+
+        Extraction(String json, boolean truncated) {
+            this.json = json;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * Returns the first top-level object that parses, preferring the
+     * contents of a code fence, or null when the text has none
+     */
+    public static JSONObject extract(String text) {
+        Extraction extraction = find(text);
+        if (extraction == null) {
+            return null;
+        }
+        JSONObject json = extraction.parsed;
+        if (extraction.truncated) {
+            json.put("truncated", true);
+        }
+        return json;
+    }
+
+    /**
+     * Scans for the first parseable object starting at each '{' in turn
+     */
+    static Extraction find(String text) {
+        if (text == null) {
+            return null;
+        }
+        int fence = text.indexOf("```");
+        if (fence >= 0) {
+            // Skip the fence and its info string (```json)
+            int contentStart = text.indexOf('\n', fence);
+            if (contentStart >= 0) {
+                Extraction fenced = findFrom(text, contentStart + 1);
+                if (fenced != null) {
+                    return fenced;
+                }
+            }
+        }
+        return findFrom(text, 0);
+    }
+
+    private static Extraction findFrom(String text, int from) {
+        int start = text.indexOf('{', from);
+        while (start >= 0) {
+            Extraction candidate = scan(text, start);
+            if (candidate != null) {
+                try {
+                    candidate.parsed = new JSONObject(candidate.json);
+                    return candidate;
+                } catch (Exception e) {
+                    // Braces in prose; try the next '{'
+                }
+            }
+            start = text.indexOf('{', start + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Scans one object starting at a '{'. Returns the balanced object, the
+     * repaired prefix when the text ends inside it, or null when a closer
+     * does not match its opener.
+     */
+    static Extraction scan(String text, int start) {
+        char[] closers = new char[16];
+        int depth = 0;
+        int openArrays = 0;
+        boolean inString = false;
+
+        // Last point where everything before it is complete: cutting there
+        // and closing the containers open at that depth gives valid JSON.
+        // Points inside an array element are skipped so that a partially
+        // written element is dropped rather than kept half-filled.
+        int safeEnd = -1;
+        int safeDepth = 0;
+
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    inString = true;
+                    break;
+                case '{':
+                case '[':
+                    if (depth == closers.length) {
+                        closers = java.util.Arrays.copyOf(closers, depth * 2);
+                    }
+                    closers[depth++] = c == '{' ? '}' : ']';
+                    if (c == '[') {
+                        openArrays++;
+                    }
+                    if (outsideArrayElement(openArrays, closers[depth - 1])) {
+                        safeEnd = i + 1;
+                        safeDepth = depth;
+                    }
+                    break;
+                case '}':
+                case ']':
+                    if (depth == 0 || closers[depth - 1] != c) {
+                        return null;
+                    }
+                    depth--;
+                    if (c == ']') {
+                        openArrays--;
+                    }
+                    if (depth == 0) {
+                        return new Extraction(text.substring(start, i + 1), false);
+                    }
+                    if (outsideArrayElement(openArrays, closers[depth - 1])) {
+                        safeEnd = i + 1;
+                        safeDepth = depth;
+                    }
+                    break;
+                case ',':
+                    if (outsideArrayElement(openArrays, closers[depth - 1])) {
+                        safeEnd = i;
+                        safeDepth = depth;
+                    }
+                    break;
+                case '`':
+                    // A closing code fence outside any string ends the output
+                    if (text.startsWith("```", i)) {
+                        return repair(text, start, safeEnd, safeDepth, closers);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return repair(text, start, safeEnd, safeDepth, closers);
+    }
+
+    /**
+     * True when no enclosing array has the current container as a
+     * still-incomplete element
+     */
+    private static boolean outsideArrayElement(int openArrays, char currentCloser) {
+        return openArrays == 0 || (openArrays == 1 && currentCloser == ']');
+    }
+
+    private static Extraction repair(String text, int start, int safeEnd, int safeDepth, char[] closers) {
+        if (safeEnd < 0) {
+            return null;
+        }
+        StringBuilder repaired = new StringBuilder(safeEnd - start + safeDepth);
+        repaired.append(text, start, safeEnd);
+        for (int d = safeDepth - 1; d >= 0; d--) {
+            repaired.append(closers[d]);
+        }
+        return new Extraction(repaired.toString(), true);
+    }
+}
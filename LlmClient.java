@@ -0,0 +1,92 @@
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - LLM client
+ * What PixelCheckComponentMapper needs from a chat-completion backend:
+ * send one payload (prompt, system_prompt, sampling settings, max_tokens)
+ * and get the response text back. QuickMLClient talks to QuickML or any
+ * server speaking its protocol, such as LlmStubServer for offline load
+ * tests.
+ *
+ * Configuration:
+ *   -Dpixelcheck.llm.client=quickml   the QuickML endpoint (default)
+ *   -Dpixelcheck.llm.client=stub      an in-process LlmStubServer (see its pixelcheck.llmStub.* settings)
+ */
+public interface LlmClient {
+
+    /**
+     * Response text of one call and why generation stopped (null when
+     * unknown, e.g. served from the cache)
+     */
+    class Completion {
+        final String text;
+        final String finishReason;
+
+        public Completion(String text, String finishReason) {
+            this.text = text;
+            this.finishReason = finishReason;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getFinishReason() {
+            return finishReason;
+        }
+
+        public boolean hitTokenLimit() {
+            return "length".equals(finishReason) || "max_tokens".equals(finishReason);
+        }
+    }
+
+    /**
+     * Model name sent with every payload
+     */
+    String model();
+
+    /**
+     * Which backend answers (endpoint or stub), mixed into every cache key
+     * so responses from different backends never stand in for each other
+     */
+    String identity();
+
+    /**
+     * Sends one payload and returns the model's response, retrying
+     * throttled calls as the implementation sees fit
+     */
+    Completion complete(JSONObject payload) throws Exception;
+
+    /**
+     * Opens connections ahead of the first call
+     */
+    default void prewarm() {
+    }
+
+    /**
+     * One-line request statistics for printStats()
+     */
+    String stats();
+
+    /**
+     * Creates the client selected by pixelcheck.llm.client
+     */
+    static LlmClient fromSystemProperties() {
+        String kind = System.getProperty("pixelcheck.llm.client", "quickml").trim().toLowerCase();
+        switch (kind) {
+            case "quickml":
+                return QuickMLClient.fromSystemProperties();
+            case "stub":
+                try {
+                    LlmStubServer stub = LlmStubServer.fromSystemProperties(0);
+                    stub.startDaemon();
+                    // One identity for every stub run: its port changes, its canned answers do not
+                    return QuickMLClient.forEndpoint(stub.endpoint(), "llm-stub");
+                } catch (Exception e) {
+                    throw new IllegalStateException("Cannot start the LLM stub server: " + e.getMessage(), e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown pixelcheck.llm.client: " + kind);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - LLM response cache
+ * Memoizes QuickML responses keyed by a stable SHA-256 of the full request
+ * payload (prompt, system prompt, model, sampling parameters, max_tokens).
+ * An in-memory LRU tier sits in front of an append-only NDJSON file, so
+ * identical requests are answered in milliseconds across runs.
+ *
+ * Configuration:
+ *   -Dpixelcheck.cache.dir=.pixelcheck-cache      cache root directory
+ *   -Dpixelcheck.llmCache.enabled=false           disable the cache
+ *   -Dpixelcheck.llmCache.bypass=true             always call the LLM (fresh responses are still stored)
+ *   -Dpixelcheck.llmCache.ttlSeconds=604800       maximum age of a cached response
+ *   -Dpixelcheck.llmCache.maxEntries=1000         size of the in-memory tier
+ *   -Dpixelcheck.llmCache.maxIndexEntries=100000  keys of the on-disk tier indexed in memory
+ *
+ * The on-disk index keeps the most recently used keys only. When the store
+ * is opened, expired, superseded and unindexed records are dropped by
+ * rewriting the file once they make up half of it.
+ */
+public class LlmResponseCache {
+
+    private static final long DEFAULT_TTL_SECONDS = 7 * 24 * 3600;
+
+    private final Path storeFile;
+    private final FileChannel store;
+    private final long ttlMillis;
+    private final boolean bypass;
+
+    // In-memory tier: key -> cached entry, least recently used evicted first
+    private final Map<String, Entry> memory;
+
+    // On-disk tier: key -> location of the latest record in the store file,
+    // least recently used evicted first
+    private final Map<String, Entry> diskIndex;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    /**
+     * One cached response, either resident (response set) or on disk
+     */
+    private static final class Entry {
+        final long createdAt;
+        final String response;
+        final long offset;
+        final int length;
+
+        Entry(long createdAt, String response, long offset, int length) {
+            this.createdAt = createdAt;
+            this.response = response;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    public LlmResponseCache(Path storeFile, long ttlSeconds, int maxEntries, int maxIndexEntries, boolean bypass)
+            throws IOException {
+        this.storeFile = storeFile;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.bypass = bypass;
+        this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.diskIndex = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxIndexEntries;
+            }
+        };
+
+        Files.createDirectories(storeFile.getParent());
+        if (!Files.exists(storeFile)) {
+            Files.createFile(storeFile);
+        }
+        long[] scan = loadIndex();
+        long records = scan[0];
+        long validLength = scan[1];
+        if (records - diskIndex.size() > diskIndex.size()) {
+            compact();
+            validLength = -1;
+        }
+        this.store = FileChannel.open(storeFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (validLength >= 0 && validLength < store.size()) {
+            store.truncate(validLength);
+        }
+    }
+
+    /**
+     * Creates the cache configured through system properties, or returns null
+     * when caching is disabled
+     */
+    public static LlmResponseCache fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("pixelcheck.llmCache.enabled", "true"))) {
+            return null;
+        }
+        Path root = Paths.get(System.getProperty("pixelcheck.cache.dir", ".pixelcheck-cache"));
+        try {
+            return new LlmResponseCache(root.resolve("llm").resolve("responses.ndjson"),
+                    Long.getLong("pixelcheck.llmCache.ttlSeconds", DEFAULT_TTL_SECONDS),
+                    Integer.getInteger("pixelcheck.llmCache.maxEntries", 1000),
+                    Integer.getInteger("pixelcheck.llmCache.maxIndexEntries", 100_000),
+                    Boolean.getBoolean("pixelcheck.llmCache.bypass"));
+        } catch (IOException e) {
+            System.err.println("Warning: LLM cache disabled, cannot open store under " + root + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stable cache key of a request payload sent to one LLM client
+     * (LlmClient#identity): SHA-256 over the client and the payload's members
+     * in sorted key order, independent of JSONObject's iteration order
+     */
+    public static String key(String client, JSONObject payload) {
+        StringBuilder canonical = new StringBuilder(JSONObject.quote(client)).append('\n');
+        for (String name : new TreeSet<>(payload.keySet())) {
+            Object value = payload.opt(name);
+            canonical.append(JSONObject.quote(name)).append(':');
+            canonical.append(value instanceof String ? JSONObject.quote((String) value) : String.valueOf(value));
+            canonical.append('\n');
+        }
+        return FigmaFileCache.sha256(canonical.toString());
+    }
+
+    /**
+     * Returns the cached response for a key, or null on a miss, an expired
+     * entry or when the cache is bypassed
+     */
+    public String get(String key, boolean bypassThisCall) {
+        if (bypass || bypassThisCall) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        Entry entry;
+        boolean fromDisk = false;
+        synchronized (this) {
+            entry = memory.get(key);
+            if (entry == null) {
+                entry = diskIndex.get(key);
+                fromDisk = entry != null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+            expired.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        if (!fromDisk) {
+            memoryHits.incrementAndGet();
+            return entry.response;
+        }
+
+        try {
+            String response = readRecord(entry).getString("response");
+            synchronized (this) {
+                memory.put(key, new Entry(entry.createdAt, response, entry.offset, entry.length));
+            }
+            diskHits.incrementAndGet();
+            return response;
+        } catch (Exception e) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Stores a response in both tiers
+     */
+    public void put(String key, String response) {
+        long createdAt = System.currentTimeMillis();
+        JSONObject record = new JSONObject();
+        record.put("key", key);
+        record.put("createdAt", createdAt);
+        record.put("response", response);
+        byte[] line = (record.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+
+        synchronized (this) {
+            try {
+                long offset = store.size();
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    store.write(buffer, offset + buffer.position());
+                }
+                diskIndex.put(key, new Entry(createdAt, null, offset, line.length - 1));
+            } catch (IOException e) {
+                System.err.println("Warning: Could not append to LLM cache " + storeFile + ": " + e.getMessage());
+            }
+            memory.put(key, new Entry(createdAt, response, -1, 0));
+        }
+    }
+
+    public long getHits() {
+        return memoryHits.get() + diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * One-line hit/miss summary
+     */
+    public String stats() {
+        return String.format("LLM cache: %d memory hits, %d disk hits, %d misses (%d expired)",
+                memoryHits.get(), diskHits.get(), misses.get(), expired.get());
+    }
+
+    private JSONObject readRecord(Entry entry) throws IOException {
+        return new JSONObject(new String(readBytes(store, entry), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readBytes(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, entry.offset + buffer.position()) < 0) {
+                throw new IOException("Truncated LLM cache record");
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Scans the store once to index the latest unexpired record of the most
+     * recent keys. Returns the number of records and the length of the
+     * complete lines (a torn last line from an interrupted write is dropped).
+     */
+    private long[] loadIndex() throws IOException {
+        long now = System.currentTimeMillis();
+        long records = 0;
+        long lineStart = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(storeFile), 65536)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                records++;
+                try {
+                    JSONObject record = new JSONObject(line.toString(StandardCharsets.UTF_8));
+                    String key = record.getString("key");
+                    long createdAt = record.getLong("createdAt");
+                    // Re-inserted so the latest record counts as the most recent use
+                    diskIndex.remove(key);
+                    if (now - createdAt <= ttlMillis) {
+                        diskIndex.put(key, new Entry(createdAt, null, lineStart, line.size()));
+                    }
+                } catch (Exception e) {
+                    // Skip corrupt records
+                }
+                line.reset();
+                lineStart = offset;
+            }
+        }
+        return new long[] { records, lineStart };
+    }
+
+    /**
+     * Rewrites the store with only the indexed records, in index order
+     */
+    private void compact() throws IOException {
+        Path temp = Files.createTempFile(storeFile.getParent(), "responses", ".tmp");
+        try {
+            try (FileChannel in = FileChannel.open(storeFile, StandardOpenOption.READ);
+                    OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 65536)) {
+                long offset = 0;
+                for (Map.Entry<String, Entry> indexed : diskIndex.entrySet()) {
+                    Entry entry = indexed.getValue();
+                    out.write(readBytes(in, entry));
+                    out.write('\n');
+                    indexed.setValue(new Entry(entry.createdAt, null, offset, entry.length));
+                    offset += entry.length + 1;
+                }
+            }
+            Files.move(temp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Local QuickML stub server
+ * Speaks the QuickML chat protocol on localhost so end-to-end throughput
+ * and latency can be measured without the real service. Each request
+ * sleeps for a latency drawn from a configurable distribution (plus an
+ * optional per-output-token cost), fails with a configurable probability,
+ * and answers with a canned response or one generated from the component
+ * ids in the prompt. Responses longer than max_tokens are cut off with
+ * finish_reason "length", so the continuation path is exercised too.
+ *
+ * Run standalone with java LlmStubServer [port] and point
+ * -Dpixelcheck.llm.endpoint at it, or use -Dpixelcheck.llm.client=stub to
+ * start one inside the PixelCheck process.
+ *
+ * Configuration:
+ *   -Dpixelcheck.llmStub.latency=lognormal:800:0.5   fixed:MS, uniform:MIN:MAX, exponential:MEAN
+ *                                                    or lognormal:MEDIAN:SIGMA, in milliseconds
+ *   -Dpixelcheck.llmStub.msPerOutputToken=0          extra generation time per response token
+ *   -Dpixelcheck.llmStub.errors=429:0.02,503:0.01    status codes returned with a probability
+ *   -Dpixelcheck.llmStub.retryAfterSeconds=1         Retry-After sent with 429s
+ *   -Dpixelcheck.llmStub.capacity=0                  concurrent requests before answering 429 (0 = unlimited)
+ *   -Dpixelcheck.llmStub.responses=FILE              NDJSON {"match": text, "response": text,
+ *                                                    "finish_reason": optional}, first match wins
+ */
+public class LlmStubServer {
+
+    private static final int DEFAULT_PORT = 8089;
+
+    // Rough output tokens of a response, as in InventoryChunker
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private static final Pattern PLATFORM = Pattern.compile("inventory for (\\S+) platform");
+    private static final Pattern CUT_OFF = Pattern.compile("cut off after (\\d+) \"");
+    private static final Pattern JSON_ID = Pattern.compile("\"id\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern TABLE_HEADER = Pattern.compile("^\\w+\\[\\d+\\]: id(\\||$)");
+
+    /**
+     * Request latency distribution in milliseconds
+     */
+    static class Latency {
+        final String kind;
+        final double a;
+        final double b;
+
+        Latency(String kind, double a, double b) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+        }
+
+        /**
+         * Parses fixed:MS, uniform:MIN:MAX, exponential:MEAN or
+         * lognormal:MEDIAN:SIGMA
+         */
+        static Latency parse(String spec) {
+            String[] parts = spec.trim().split(":");
+            double a = parts.length > 1 ? Double.parseDouble(parts[1]) : 0;
+            double b = parts.length > 2 ? Double.parseDouble(parts[2]) : 0;
+            switch (parts[0]) {
+                case "fixed":
+                case "uniform":
+                case "exponential":
+                case "lognormal":
+                    return new Latency(parts[0], a, b);
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+            }
+        }
+
+        long sampleMillis() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            switch (kind) {
+                case "uniform":
+                    return (long) (a + random.nextDouble() * Math.max(0, b - a));
+                case "exponential":
+                    return (long) (-a * Math.log(1 - random.nextDouble()));
+                case "lognormal":
+                    return (long) (a * Math.exp(b * random.nextGaussian()));
+                default:
+                    return (long) a;
+            }
+        }
+    }
+
+    private final HttpServer server;
+    private final Latency latency;
+    private final double msPerOutputToken;
+    private final Map<Integer, Double> errorRates;
+    private final long retryAfterSeconds;
+    private final int capacity;
+    private final List<JSONObject> cannedResponses;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public LlmStubServer(int port, Latency latency, double msPerOutputToken, Map<Integer, Double> errorRates,
+            long retryAfterSeconds, int capacity, List<JSONObject> cannedResponses) throws IOException {
+        this.latency = latency;
+        this.msPerOutputToken = msPerOutputToken;
+        this.errorRates = errorRates;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.capacity = capacity;
+        this.cannedResponses = cannedResponses;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(PixelCheckComponentMapper.newTaskExecutor());
+    }
+
+    /**
+     * Creates a stub configured through pixelcheck.llmStub.* properties
+     */
+    public static LlmStubServer fromSystemProperties(int port) throws IOException {
+        Map<Integer, Double> errorRates = new LinkedHashMap<>();
+        String errors = System.getProperty("pixelcheck.llmStub.errors", "");
+        for (String entry : errors.split(",")) {
+            if (!entry.isBlank()) {
+                String[] parts = entry.trim().split(":");
+                errorRates.put(Integer.parseInt(parts[0]), Double.parseDouble(parts[1]));
+            }
+        }
+
+        List<JSONObject> canned = new ArrayList<>();
+        String responses = System.getProperty("pixelcheck.llmStub.responses");
+        if (responses != null) {
+            for (String line : Files.readAllLines(Paths.get(responses), StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    canned.add(new JSONObject(line));
+                }
+            }
+        }
+
+        return new LlmStubServer(port,
+                Latency.parse(System.getProperty("pixelcheck.llmStub.latency", "lognormal:800:0.5")),
+                Double.parseDouble(System.getProperty("pixelcheck.llmStub.msPerOutputToken", "0")),
+                errorRates,
+                Long.getLong("pixelcheck.llmStub.retryAfterSeconds", 1),
+                Integer.getInteger("pixelcheck.llmStub.capacity", 0),
+                canned);
+    }
+
+    public void start() {
+        // Registered here rather than in the constructor so the handler never sees a partly built stub
+        server.createContext("/", this::handle);
+        server.start();
+        System.out.println("✓ LLM stub server listening on " + endpoint());
+    }
+
+    /**
+     * Starts the server without keeping the JVM alive: the dispatcher
+     * thread inherits daemon status from the thread that starts it
+     */
+    public void startDaemon() throws InterruptedException {
+        Thread starter = new Thread(this::start, "llm-stub-start");
+        starter.setDaemon(true);
+        starter.start();
+        starter.join();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Chat endpoint URL for QuickMLClient
+     */
+    public String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/llm/chat";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        boolean overCapacity = capacity > 0 && inFlight.incrementAndGet() > capacity;
+        try {
+            JSONObject payload;
+            try (InputStream body = exchange.getRequestBody()) {
+                payload = new JSONObject(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            if (overCapacity) {
+                sendError(exchange, 429);
+                return;
+            }
+
+            int status = drawError();
+            String prompt = payload.optString("prompt", "");
+            int maxTokens = payload.optInt("max_tokens", Integer.MAX_VALUE);
+            JSONObject response = status == 200 ? respond(prompt, maxTokens) : null;
+
+            long delay = latency.sampleMillis();
+            if (response != null) {
+                delay += (long) (msPerOutputToken * response.getString("response").length() / CHARS_PER_TOKEN);
+            }
+            Thread.sleep(delay);
+
+            if (response == null) {
+                sendError(exchange, status);
+            } else {
+                send(exchange, 200, response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendError(exchange, 503);
+        } catch (Exception e) {
+            send(exchange, 400, new JSONObject().put("error", String.valueOf(e.getMessage())));
+        } finally {
+            if (capacity > 0) {
+                inFlight.decrementAndGet();
+            }
+            exchange.close();
+        }
+    }
+
+    /**
+     * 200, or one of the configured error statuses with its probability
+     */
+    private int drawError() {
+        double draw = ThreadLocalRandom.current().nextDouble();
+        for (Map.Entry<Integer, Double> rate : errorRates.entrySet()) {
+            draw -= rate.getValue();
+            if (draw < 0) {
+                return rate.getKey();
+            }
+        }
+        return 200;
+    }
+
+    /**
+     * QuickML response body for a prompt, cut off at max_tokens
+     */
+    JSONObject respond(String prompt, int maxTokens) {
+        String text = null;
+        String finishReason = "stop";
+        for (JSONObject canned : cannedResponses) {
+            if (prompt.contains(canned.optString("match", ""))) {
+                text = canned.getString("response");
+                finishReason = canned.optString("finish_reason", finishReason);
+                break;
+            }
+        }
+        if (text == null) {
+            text = generate(prompt);
+        }
+        if ((long) maxTokens * CHARS_PER_TOKEN < text.length()) {
+            text = text.substring(0, maxTokens * CHARS_PER_TOKEN);
+            finishReason = "length";
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("response", text);
+        response.put("finish_reason", finishReason);
+        return response;
+    }
+
+    /**
+     * Well-formed analysis or mapping JSON covering the component ids of
+     * the prompt's data, skipping entries a continuation prompt says were
+     * already received
+     */
+    static String generate(String prompt) {
+        int skip = 0;
+        Matcher cutOff = CUT_OFF.matcher(prompt);
+        if (cutOff.find()) {
+            skip = Integer.parseInt(cutOff.group(1));
+        }
+
+        if (prompt.contains("ANDROID COMPONENTS:")) {
+            List<String> android = ids(section(prompt, "ANDROID COMPONENTS:\n", "\n\nIOS COMPONENTS:"));
+            List<String> ios = ids(section(prompt, "IOS COMPONENTS:\n", "\n\nWEB COMPONENTS:"));
+            List<String> web = ids(section(prompt, "WEB COMPONENTS:\n", "\n\nTask:"));
+            int count = Math.max(android.size(), Math.max(ios.size(), web.size()));
+            JSONArray mappings = new JSONArray();
+            for (int i = skip; i < count; i++) {
+                JSONObject mapping = new JSONObject();
+                mapping.put("purpose", "stub_purpose_" + i);
+                putPlatform(mapping, "android", android, i);
+                putPlatform(mapping, "ios", ios, i);
+                putPlatform(mapping, "web", web, i);
+                mapping.put("consistency", android.size() > i && ios.size() > i && web.size() > i
+                        ? "equivalent" : "missing");
+                mapping.put("notes", "Generated by LlmStubServer");
+                mappings.put(mapping);
+            }
+            JSONObject summary = new JSONObject();
+            summary.put("total_mappings", count);
+            summary.put("consistent_components", Math.min(android.size(), Math.min(ios.size(), web.size())));
+            summary.put("missing_on_platforms", new JSONArray());
+            summary.put("inconsistencies", new JSONArray());
+            return "```json\n" + new JSONObject().put("mappings", mappings).put("summary", summary) + "\n```";
+        }
+
+        Matcher platform = PLATFORM.matcher(prompt);
+        List<String> ids = ids(section(prompt, "Component inventory:\n", "\n\nPlease identify"));
+        JSONArray components = new JSONArray();
+        for (int i = skip; i < ids.size(); i++) {
+            JSONObject component = new JSONObject();
+            component.put("id", ids.get(i));
+            component.put("type", "button");
+            component.put("name", "Component " + ids.get(i));
+            component.put("purpose", "stub_purpose_" + i);
+            component.put("text", "");
+            component.put("properties", new JSONObject());
+            components.put(component);
+        }
+        JSONObject analysis = new JSONObject();
+        analysis.put("platform", platform.find() ? platform.group(1) : "unknown");
+        analysis.put("components", components);
+        return "```json\n" + analysis + "\n```";
+    }
+
+    private static void putPlatform(JSONObject mapping, String platform, List<String> ids, int index) {
+        if (index < ids.size()) {
+            JSONObject component = new JSONObject();
+            component.put("id", ids.get(index));
+            component.put("type", "button");
+            component.put("name", "Component " + ids.get(index));
+            component.put("implementation", "stub");
+            mapping.put(platform, component);
+        }
+    }
+
+    private static String section(String prompt, String start, String end) {
+        int from = prompt.indexOf(start);
+        if (from < 0) {
+            return "";
+        }
+        from += start.length();
+        int to = prompt.indexOf(end, from);
+        return prompt.substring(from, to < 0 ? prompt.length() : to);
+    }
+
+    /**
+     * Component ids of a prompt section: the first cell of compact table
+     * rows, or the "id" fields of JSON
+     */
+    static List<String> ids(String section) {
+        List<String> ids = new ArrayList<>();
+        boolean inTable = false;
+        for (String line : section.split("\n")) {
+            if (TABLE_HEADER.matcher(line).find()) {
+                inTable = line.startsWith("components[");
+                continue;
+            }
+            if (inTable && !line.isEmpty()) {
+                int end = firstUnescapedBar(line);
+                ids.add(line.substring(0, end));
+            } else {
+                inTable = false;
+            }
+        }
+        if (ids.isEmpty()) {
+            Matcher matcher = JSON_ID.matcher(section);
+            while (matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+        }
+        return ids;
+    }
+
+    private static int firstUnescapedBar(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '|') {
+                return i;
+            }
+        }
+        return line.length();
+    }
+
+    private void sendError(HttpExchange exchange, int status) throws IOException {
+        errors.incrementAndGet();
+        if (status == 429) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        }
+        send(exchange, status, new JSONObject().put("error", "Stubbed error " + status));
+    }
+
+    private static void send(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public String stats() {
+        return String.format("LLM stub: %d requests, %d errors", requests.get(), errors.get());
+    }
+
+    /**
+     * Runs the stub standalone: java LlmStubServer [port]
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        LlmStubServer stub = fromSystemProperties(port);
+        stub.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stub.stop();
+            System.out.println(stub.stats());
+        }));
+    }
+}
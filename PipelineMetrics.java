@@ -0,0 +1,297 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PixelCheck - Pipeline metrics
+ * Per-stage latency histograms and throughput counters for the whole
+ * pipeline, cheap enough to stay on in production: every metric is a
+ * static field updated with lock-free adders, so recording a sample is a
+ * clock read and a few atomic increments.
+ *
+ * Stages nest: a platform "run" spans its Figma fetch, parse, prompt build,
+ * LLM call and JSON extraction, and "mapping" includes the mapping prompt
+ * and LLM call. "figma_fetch" lasts until the response body is available
+ * (or cached); reading and parsing the body is "parse".
+ *
+ * Exposed as Prometheus text on GET /metrics in server mode and printed
+ * as a summary at the end of batch runs.
+ *
+ * Configuration:
+ *   -Dpixelcheck.metrics.enabled=true   record metrics (false turns every update into a no-op)
+ */
+public final class PipelineMetrics {
+
+    private static final boolean ENABLED = !"false"
+            .equalsIgnoreCase(System.getProperty("pixelcheck.metrics.enabled", "true"));
+
+    private static final List<Histogram> STAGES = new ArrayList<>();
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+
+    // Stage latencies
+    public static final Histogram KEY_EXTRACTION = stage("key_extraction");
+    public static final Histogram FIGMA_FETCH = stage("figma_fetch");
+    public static final Histogram PARSE = stage("parse");
+    public static final Histogram PROMPT_BUILD = stage("prompt_build");
+    public static final Histogram LLM_CALL = stage("llm_call");
+    public static final Histogram JSON_EXTRACTION = stage("json_extraction");
+    public static final Histogram MAPPING = stage("mapping");
+    public static final Histogram RUN = stage("run");
+
+    // Throughput and volume
+    public static final Counter RUNS = counter("runs", "Completed (android, ios, web) runs");
+    public static final Counter RUN_FAILURES = counter("run_failures", "Failed runs");
+    public static final Counter FIGMA_REQUESTS = counter("figma_requests", "Figma API requests sent, including retries");
+    public static final Counter FIGMA_BYTES = counter("figma_downloaded_bytes", "Figma response body bytes read");
+    public static final Counter FIGMA_RETRIES = counter("figma_retries", "Figma requests retried after 429/5xx");
+    public static final Counter FIGMA_ERRORS = counter("figma_errors", "Figma requests that failed");
+    public static final Counter FIGMA_CACHE_HITS = counter("figma_cache_hits", "Figma bodies served from the file cache");
+    public static final Counter FIGMA_CACHE_MISSES = counter("figma_cache_misses", "Figma bodies downloaded into the file cache");
+    public static final Counter LLM_REQUESTS = counter("llm_requests", "LLM requests sent, including retries");
+    public static final Counter LLM_PROMPT_CHARS = counter("llm_prompt_chars", "Prompt characters sent to the LLM");
+    public static final Counter LLM_RESPONSE_CHARS = counter("llm_response_chars", "Response characters received from the LLM");
+    public static final Counter LLM_RETRIES = counter("llm_retries", "LLM requests retried after 429/5xx or timeouts");
+    public static final Counter LLM_ERRORS = counter("llm_errors", "LLM calls that failed");
+    public static final Counter LLM_CACHE_HITS = counter("llm_cache_hits", "LLM responses served from the response cache");
+    public static final Counter LLM_TRUNCATIONS = counter("llm_truncations", "LLM responses cut off at max_tokens");
+    public static final Counter JSON_FAILURES = counter("json_failures", "LLM responses without parseable JSON");
+    public static final Counter FRAMES_REUSED = counter("frames_reused", "Frames whose stored analysis was reused");
+    public static final Counter STRUCTURES_REUSED = counter("structures_reused", "Component structures answered by the memo");
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * Latency histogram with fixed log-spaced buckets from 1ms to 2 minutes
+     */
+    public static final class Histogram {
+        // Bucket upper bounds in nanoseconds; the last bucket is +Inf
+        private static final long[] BOUNDS = {
+                1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L,
+                250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L,
+                30_000_000_000L, 60_000_000_000L, 120_000_000_000L
+        };
+
+        final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+        private final LongAdder sumNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Histogram(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records the time elapsed since a System.nanoTime() reading
+         */
+        public void observeSince(long startNanos) {
+            observe(System.nanoTime() - startNanos);
+        }
+
+        public void observe(long nanos) {
+            if (!ENABLED) {
+                return;
+            }
+            int bucket = 0;
+            while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            sumNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * Upper bound (ms) of the bucket holding the given quantile; the
+         * maximum for the open-ended last bucket
+         */
+        double quantileMillis(double quantile) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(BOUNDS[i], maxNanos.get()) / 1e6;
+                }
+            }
+            return maxNanos.get() / 1e6;
+        }
+    }
+
+    /**
+     * Monotonic counter
+     */
+    public static final class Counter {
+        final String name;
+        final String help;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public void increment() {
+            if (ENABLED) {
+                value.increment();
+            }
+        }
+
+        public void add(long amount) {
+            if (ENABLED) {
+                value.add(amount);
+            }
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        /**
+         * Wraps a stream so every byte read from it is added to this counter
+         */
+        public InputStream counting(InputStream in) {
+            if (!ENABLED) {
+                return in;
+            }
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        value.increment();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int n = super.read(buffer, offset, length);
+                    if (n > 0) {
+                        value.add(n);
+                    }
+                    return n;
+                }
+            };
+        }
+    }
+
+    private static Histogram stage(String name) {
+        Histogram histogram = new Histogram(name);
+        STAGES.add(histogram);
+        return histogram;
+    }
+
+    private static Counter counter(String name, String help) {
+        Counter counter = new Counter(name, help);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    static List<Histogram> stages() {
+        return Collections.unmodifiableList(STAGES);
+    }
+
+    static List<Counter> counters() {
+        return Collections.unmodifiableList(COUNTERS);
+    }
+
+    private static double uptimeSeconds() {
+        return ManagementFactory.getRuntimeMXBean().getUptime() / 1e3;
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format (version 0.0.4)
+     */
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder(8192);
+        out.append("# HELP pixelcheck_stage_duration_seconds Latency of each pipeline stage\n")
+                .append("# TYPE pixelcheck_stage_duration_seconds histogram\n");
+        for (Histogram stage : STAGES) {
+            long cumulative = 0;
+            for (int i = 0; i <= Histogram.BOUNDS.length; i++) {
+                cumulative += stage.buckets.get(i);
+                String le = i < Histogram.BOUNDS.length ? seconds(Histogram.BOUNDS[i]) : "+Inf";
+                out.append("pixelcheck_stage_duration_seconds_bucket{stage=\"").append(stage.name)
+                        .append("\",le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append("pixelcheck_stage_duration_seconds_sum{stage=\"").append(stage.name).append("\"} ")
+                    .append(seconds(stage.sumNanos.sum())).append('\n');
+            out.append("pixelcheck_stage_duration_seconds_count{stage=\"").append(stage.name).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        for (Counter counter : COUNTERS) {
+            String name = "pixelcheck_" + counter.name + "_total";
+            out.append("# HELP ").append(name).append(' ').append(counter.help).append('\n')
+                    .append("# TYPE ").append(name).append(" counter\n")
+                    .append(name).append(' ').append(counter.get()).append('\n');
+        }
+        out.append("# HELP pixelcheck_uptime_seconds Seconds since the JVM started\n")
+                .append("# TYPE pixelcheck_uptime_seconds gauge\n")
+                .append("pixelcheck_uptime_seconds ").append(String.format(Locale.ROOT, "%.3f", uptimeSeconds()))
+                .append('\n');
+        return out.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9).replaceAll("0+$", "").replaceAll("\\.$", "");
+    }
+
+    /**
+     * Human-readable table of stage latencies and non-zero counters
+     */
+    public static String summary() {
+        if (!ENABLED) {
+            return "Pipeline metrics: disabled";
+        }
+        StringBuilder out = new StringBuilder("Pipeline metrics (").append(String.format("%.1fs", uptimeSeconds()))
+                .append("):\n");
+        out.append(String.format("   %-16s %8s %10s %10s %10s %10s %10s%n", "stage", "count", "total", "mean",
+                "p50", "p95", "max"));
+        for (Histogram stage : STAGES) {
+            long count = stage.count();
+            if (count == 0) {
+                continue;
+            }
+            double totalMillis = stage.sumNanos.sum() / 1e6;
+            out.append(String.format("   %-16s %8d %10s %10s %10s %10s %10s%n", stage.name, count,
+                    millis(totalMillis), millis(totalMillis / count), millis(stage.quantileMillis(0.5)),
+                    millis(stage.quantileMillis(0.95)), millis(stage.maxNanos.get() / 1e6)));
+        }
+        double uptime = uptimeSeconds();
+        for (Counter counter : COUNTERS) {
+            long value = counter.get();
+            if (value > 0) {
+                out.append(String.format("   %-24s %12d  (%.2f/s)%n", counter.name, value, value / uptime));
+            }
+        }
+        return out.toString().stripTrailing();
+    }
+
+    private static String millis(double millis) {
+        return millis >= 10_000 ? String.format("%.1fs", millis / 1000) : String.format("%.1fms", millis);
+    }
+}
@@ -2,12 +2,29 @@ import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
-import java.net.http.HttpClient;
+import java.net.URLEncoder;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.json.JSONObject;
 import org.json.JSONArray;
+import org.json.JSONTokener;
 
 /**
  * PixelCheck - Cross-Platform UI Component Mapper
@@ -16,134 +33,701 @@ import org.json.JSONArray;
  */
 public class PixelCheckComponentMapper {
 
-    // QuickML LLM Configuration
-    private static final String QUICKML_ENDPOINT = "https://api.catalyst.zoho.in/quickml/v2/project/28618000000011083/llm/chat";
-    private static final String CATALYST_ORG = "60064252849";
-    private static final String AUTHORIZATION_TOKEN = "Zoho-oauthtoken 1000.63bd483c2152e704e65f879f82596219.03e9481f8f677d8efbb6fafc6a6417b2";
-    private static final String MODEL_NAME = "crm-di-qwen_text_14b-fp8-it";
+    // LLM backend (QuickML unless pixelcheck.llm.client selects another)
+    private static final LlmClient LLM_CLIENT = LlmClient.fromSystemProperties();
 
-    // Figma API Configuration
-    private static final String FIGMA_API_BASE = "https://api.figma.com/v1";
+    // Run id of single-run results in the ResultSink stream
+    static final String RESULT_RUN = "pixelcheck";
+
+    // Figma API Configuration (pixelcheck.figma.stub=true serves synthetic files from an in-process FigmaStubServer)
+    private static final String FIGMA_API_BASE = figmaApiBase();
+
+    // Figma document parser: "json" builds the full org.json tree,
+    // "streaming" pull-parses the response and keeps only the node fields PixelCheck uses
+    private static final boolean STREAMING_PARSER = "streaming"
+            .equalsIgnoreCase(System.getProperty("pixelcheck.parser", "json"));
+
+    // Persistent Figma file cache (null when disabled)
+    private static final FigmaFileCache FIGMA_CACHE = FigmaFileCache.fromSystemProperties();
+
+    static FigmaFileCache figmaCache() {
+        return FIGMA_CACHE;
+    }
+
+    // Memoized LLM responses (null when disabled)
+    private static final LlmResponseCache LLM_CACHE = LlmResponseCache.fromSystemProperties();
+
+    // Optional depth limit below each node of a node-scoped fetch (0 = full subtree)
+    private static final int FIGMA_NODE_DEPTH = Integer.getInteger("pixelcheck.figma.nodeDepth", 0);
+
+    // Per-frame analysis results reused across file versions
+    private static final FrameAnalysisStore FRAME_STORE = FrameAnalysisStore.fromSystemProperties(
+            LLM_CLIENT.identity() + "\n" + LLM_CLIENT.model() + "\n" + buildAnalysisPrompt(new JSONObject(), ""));
+
+    // pixelcheck.llmCache.bypass forces fresh analyses: stored results are written but not reused
+    private static final boolean LLM_CACHE_BYPASS = Boolean.getBoolean("pixelcheck.llmCache.bypass");
+
+    // Classifications memoized per structural subtree hash
+    private static final StructureMemo STRUCTURE_MEMO = StructureMemo.fromSystemProperties();
+
+    // Per-token Figma rate limiting with retries of throttled requests
+    private static final FigmaRateLimiter FIGMA_LIMITER = FigmaRateLimiter.fromSystemProperties();
+    private static final RetryPolicy FIGMA_RETRY = RetryPolicy.fromSystemProperties("figma");
+
+    // Coalesce concurrent identical Figma fetches and LLM calls
+    private static final SingleFlight<String, JSONObject> FIGMA_JSON_FLIGHTS = new SingleFlight<>("Figma fetches (JSON)");
+    private static final SingleFlight<String, Map<String, FigmaNode>> FIGMA_NODES_FLIGHTS = new SingleFlight<>(
+            "Figma fetches (nodes)");
+    private static final SingleFlight<String, FigmaNode> FIGMA_DOCUMENT_FLIGHTS = new SingleFlight<>(
+            "Figma fetches (streaming)");
+    private static final SingleFlight<String, LlmClient.Completion> LLM_FLIGHTS = new SingleFlight<>("LLM calls");
+
+    // Local cross-platform matcher, escalates ambiguous components to the LLM
+    private static final ComponentMatcher MATCHER = ComponentMatcher.fromSystemProperties();
+
+    // Input token budget of one analysis prompt; larger inventories are chunked
+    private static final int INPUT_TOKEN_BUDGET = Integer.getInteger("pixelcheck.llm.inputTokenBudget", 6000);
+
+    // Response sizing: max_tokens = base + per-entry tokens * entries, clamped
+    private static final int MIN_OUTPUT_TOKENS = 512;
+    private static final int MAX_OUTPUT_TOKENS = Integer.getInteger("pixelcheck.llm.maxOutputTokens", 8000);
+    private static final int ANALYSIS_BASE_TOKENS = 200;
+    private static final int ANALYSIS_TOKENS_PER_COMPONENT = 60;
+    private static final int MAPPING_BASE_TOKENS = 300;
+    private static final int MAPPING_TOKENS_PER_ENTRY = 130;
+
+    // Continuation requests issued for one truncated response
+    private static final int MAX_CONTINUATIONS = Integer.getInteger("pixelcheck.llm.maxContinuations", 3);
+
+    // Shared executor for the per-platform pipelines (virtual threads when the JDK supports them)
+    static final ExecutorService TASK_EXECUTOR = newTaskExecutor();
+
+    /**
+     * Creates a virtual-thread-per-task executor on JDK 21+, falling back to a
+     * cached pool of daemon threads on older runtimes
+     */
+    static ExecutorService newTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "pixelcheck-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
 
     /**
      * Fetches Figma file JSON data
      */
     public static JSONObject fetchFigmaJSON(String fileKey, String accessToken) throws Exception {
-        String url = FIGMA_API_BASE + "/files/" + fileKey;
+        return FIGMA_JSON_FLIGHTS.execute(fileKey + "\n" + accessToken.trim(), () -> {
+            long start = System.nanoTime();
+            try (InputStream body = openFigmaFile(fileKey, accessToken)) {
+                PipelineMetrics.FIGMA_FETCH.observeSince(start);
+                long parseStart = System.nanoTime();
+                JSONObject json = new JSONObject(new JSONTokener(new InputStreamReader(body, StandardCharsets.UTF_8)));
+                PipelineMetrics.PARSE.observeSince(parseStart);
+                return json;
+            }
+        });
+    }
+
+    /**
+     * Fetches a Figma file and stream-parses it into a compact node tree
+     * without holding the response body or a full JSON tree in memory
+     */
+    public static FigmaNode fetchFigmaDocument(String fileKey, String accessToken) throws Exception {
+        return FIGMA_DOCUMENT_FLIGHTS.execute(fileKey + "\n" + accessToken.trim(), () -> {
+            long start = System.nanoTime();
+            try (InputStream body = openFigmaFile(fileKey, accessToken)) {
+                PipelineMetrics.FIGMA_FETCH.observeSince(start);
+                long parseStart = System.nanoTime();
+                FigmaNode document = FigmaStreamingParser.parseFile(body);
+                PipelineMetrics.PARSE.observeSince(parseStart);
+                return document;
+            }
+        });
+    }
+
+    /**
+     * Fetches only the given nodes of a Figma file (GET /files/{key}/nodes)
+     * and returns each node's subtree by id. Platforms whose frames live in
+     * the same file request the same id set, so they share one download.
+     */
+    public static Map<String, FigmaNode> fetchFigmaNodes(String fileKey, List<String> nodeIds, String accessToken)
+            throws Exception {
+        StringBuilder resource = new StringBuilder("/nodes?ids=");
+        for (int i = 0; i < nodeIds.size(); i++) {
+            if (i > 0) {
+                resource.append(',');
+            }
+            resource.append(URLEncoder.encode(nodeIds.get(i), StandardCharsets.UTF_8));
+        }
+        if (FIGMA_NODE_DEPTH > 0) {
+            resource.append("&depth=").append(FIGMA_NODE_DEPTH);
+        }
+
+        String path = resource.toString();
+        return FIGMA_NODES_FLIGHTS.execute(fileKey + path + "\n" + accessToken.trim(), () -> {
+            long start = System.nanoTime();
+            try (InputStream body = openFigmaFile(fileKey, path, accessToken)) {
+                PipelineMetrics.FIGMA_FETCH.observeSince(start);
+                long parseStart = System.nanoTime();
+                if (STREAMING_PARSER) {
+                    Map<String, FigmaNode> nodes = FigmaStreamingParser.parseNodes(body);
+                    PipelineMetrics.PARSE.observeSince(parseStart);
+                    return nodes;
+                }
+                JSONObject response = new JSONObject(new JSONTokener(new InputStreamReader(body, StandardCharsets.UTF_8)));
+                Map<String, FigmaNode> nodes = new HashMap<>();
+                JSONObject found = response.getJSONObject("nodes");
+                for (String id : found.keySet()) {
+                    JSONObject entry = found.optJSONObject(id);
+                    if (entry != null && entry.optJSONObject("document") != null) {
+                        nodes.put(id, FigmaNode.fromJSON(entry.getJSONObject("document")));
+                    }
+                }
+                PipelineMetrics.PARSE.observeSince(parseStart);
+                return nodes;
+            }
+        });
+    }
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+    /**
+     * Fetches the design a URL points at. Node-scoped URLs download only
+     * the referenced subtrees of the file, requested together with the
+     * other node-scoped URLs of the same run that share the file. When any
+     * of those URLs needs the whole file, it is downloaded once and the
+     * nodes are found locally.
+     */
+    static FigmaNode fetchDesign(FigmaUrl url, List<FigmaUrl> run, String accessToken) throws Exception {
+        TreeSet<String> nodeIds = new TreeSet<>();
+        boolean wholeFile = url.getNodeId() == null;
+        for (FigmaUrl other : run) {
+            if (other.getFileKey().equals(url.getFileKey())) {
+                if (other.getNodeId() == null) {
+                    wholeFile = true;
+                } else {
+                    nodeIds.add(other.getNodeId());
+                }
+            }
+        }
+        if (url.getNodeId() != null) {
+            nodeIds.add(url.getNodeId());
+        }
+
+        FigmaNode design;
+        if (wholeFile) {
+            FigmaNode document = STREAMING_PARSER
+                    ? fetchFigmaDocument(url.getFileKey(), accessToken)
+                    : FigmaNode.fromJSON(fetchFigmaJSON(url.getFileKey(), accessToken).getJSONObject("document"));
+            design = url.getNodeId() == null ? document : document.find(url.getNodeId());
+        } else {
+            design = fetchFigmaNodes(url.getFileKey(), new ArrayList<>(nodeIds), accessToken).get(url.getNodeId());
+        }
+        if (design == null) {
+            throw new Exception("Node " + url.getNodeId() + " not found in Figma file " + url.getFileKey());
+        }
+        return design;
+    }
+
+    /**
+     * Opens a Figma file body, served from the on-disk cache when the file's
+     * current version has already been downloaded
+     */
+    static InputStream openFigmaFile(String fileKey, String accessToken) throws Exception {
+        return openFigmaFile(fileKey, "", accessToken);
+    }
+
+    /**
+     * Opens a Figma file resource (the file itself, or a path below it such
+     * as /nodes?ids=...), cached per file version like the whole file
+     */
+    static InputStream openFigmaFile(String fileKey, String resource, String accessToken) throws Exception {
+        if (FIGMA_CACHE == null) {
+            return downloadFigmaFile(fileKey, resource, accessToken);
+        }
+
+        String version = FIGMA_CACHE.recentVersion(fileKey, accessToken);
+        if (version == null) {
+            version = fetchFigmaVersion(fileKey, accessToken);
+            FIGMA_CACHE.rememberVersion(fileKey, accessToken, version);
+        }
+
+        InputStream cached = FIGMA_CACHE.open(fileKey + resource, version);
+        if (cached != null) {
+            PipelineMetrics.FIGMA_CACHE_HITS.increment();
+            return cached;
+        }
+        PipelineMetrics.FIGMA_CACHE_MISSES.increment();
+        try (InputStream body = downloadFigmaFile(fileKey, resource, accessToken)) {
+            return FIGMA_CACHE.store(fileKey + resource, version, body);
+        }
+    }
+
+    /**
+     * Figma REST base URL: pixelcheck.figma.apiBase, or a local
+     * FigmaStubServer when pixelcheck.figma.stub is set
+     */
+    private static String figmaApiBase() {
+        if (Boolean.getBoolean("pixelcheck.figma.stub")) {
+            try {
+                FigmaStubServer stub = FigmaStubServer.fromSystemProperties(0);
+                stub.startDaemon();
+                return stub.apiBase();
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot start the Figma stub server: " + e.getMessage(), e);
+            }
+        }
+        return System.getProperty("pixelcheck.figma.apiBase", "https://api.figma.com/v1");
+    }
+
+    /**
+     * Cheap metadata check: asks Figma for the file's current version
+     * without downloading the node tree
+     */
+    static String fetchFigmaVersion(String fileKey, String accessToken) throws Exception {
+        String url = FIGMA_API_BASE + "/files/" + fileKey + "?depth=1";
+
+        HttpRequest request = HttpTransport.newRequest(HttpTransport.FIGMA, URI.create(url))
                 .header("X-Figma-Token", accessToken.trim())
                 .GET()
                 .build();
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = sendFigmaRequest(request, HttpResponse.BodyHandlers.ofString(),
+                accessToken.trim());
 
+        PipelineMetrics.FIGMA_BYTES.add(response.body().length());
         if (response.statusCode() != 200) {
+            PipelineMetrics.FIGMA_ERRORS.increment();
             throw new Exception("Figma API error (" + response.statusCode() + "): " + response.body());
         }
 
-        return new JSONObject(response.body());
+        JSONObject meta = new JSONObject(response.body());
+        return meta.optString("version", meta.optString("lastModified", "unknown"));
+    }
+
+    /**
+     * Downloads a Figma file resource body as a stream
+     */
+    private static InputStream downloadFigmaFile(String fileKey, String resource, String accessToken)
+            throws Exception {
+        String url = FIGMA_API_BASE + "/files/" + fileKey + resource;
+
+        HttpRequest request = HttpTransport.newRequest(HttpTransport.FIGMA, URI.create(url))
+                .header("X-Figma-Token", accessToken.trim())
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response = sendFigmaRequest(request, HttpResponse.BodyHandlers.ofInputStream(),
+                accessToken.trim());
+
+        if (response.statusCode() != 200) {
+            PipelineMetrics.FIGMA_ERRORS.increment();
+            try (InputStream body = response.body()) {
+                throw new Exception("Figma API error (" + response.statusCode() + "): "
+                        + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return PipelineMetrics.FIGMA_BYTES.counting(response.body());
+    }
+
+    /**
+     * Sends a Figma request within the access token's rate limit. 429 and
+     * 5xx responses pause the token (Retry-After or backoff) and are
+     * retried; the last response is returned once retries are exhausted.
+     */
+    private static <T> HttpResponse<T> sendFigmaRequest(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+            String accessToken) throws Exception {
+        for (int attempt = 0;; attempt++) {
+            HttpResponse<T> response;
+            FIGMA_LIMITER.acquire(accessToken);
+            PipelineMetrics.FIGMA_REQUESTS.increment();
+            try {
+                response = HttpTransport.send(HttpTransport.FIGMA, request, handler);
+            } catch (Exception e) {
+                PipelineMetrics.FIGMA_ERRORS.increment();
+                throw e;
+            } finally {
+                FIGMA_LIMITER.release(accessToken);
+            }
+
+            if (!RetryPolicy.isRetryable(response.statusCode()) || attempt >= FIGMA_RETRY.getMaxRetries()) {
+                return response;
+            }
+            if (response.body() instanceof InputStream) {
+                ((InputStream) response.body()).close();
+            }
+            long delay = FIGMA_RETRY.delayMillis(attempt + 1, response);
+            PipelineMetrics.FIGMA_RETRIES.increment();
+            System.err.println("Warning: Figma API " + response.statusCode() + ", retry " + (attempt + 1) + " in "
+                    + delay + "ms");
+            FIGMA_LIMITER.pause(accessToken, delay);
+        }
     }
 
     /**
      * Analyzes Figma components using QuickML LLM
      */
     public static JSONObject analyzeFigmaComponents(JSONObject figmaJson, String platform) throws Exception {
-        String prompt = String.format(
-                "Analyze this Figma design JSON for %s platform and extract all UI components.\n\n" +
-                        "Figma JSON:\n%s\n\n" +
-                        "Please identify and list all interactive UI components with the following details:\n" +
-                        "1. Component type (button, search_bar, search_icon, input_field, text_field, dropdown, checkbox, icon, etc.)\n"
-                        +
-                        "2. Component name/label\n" +
-                        "3. Component purpose/function\n" +
-                        "4. Text content (if any)\n" +
-                        "5. Component ID from Figma\n\n" +
-                        "Return the response in this exact JSON format:\n" +
-                        "{\n" +
-                        "  \"platform\": \"%s\",\n" +
-                        "  \"components\": [\n" +
-                        "    {\n" +
-                        "      \"id\": \"figma_node_id\",\n" +
-                        "      \"type\": \"component_type\",\n" +
-                        "      \"name\": \"component_name\",\n" +
-                        "      \"purpose\": \"what_it_does\",\n" +
-                        "      \"text\": \"visible_text\",\n" +
-                        "      \"properties\": {}\n" +
-                        "    }\n" +
-                        "  ]\n" +
-                        "}",
-                platform, figmaJson.toString(2), platform);
+        JSONObject document = figmaJson.optJSONObject("document");
+        return analyzeFigmaComponents(FigmaNode.fromJSON(document != null ? document : figmaJson), platform);
+    }
+
+    /**
+     * Analyzes a Figma node tree using QuickML LLM. Components are
+     * pre-extracted locally so only the compact inventory is sent; large
+     * inventories are split into token-budgeted chunks that are analyzed in
+     * parallel and merged back into one platform result. Frames whose
+     * inventory is unchanged since an earlier analysis reuse its result, so
+     * only edited frames are sent to the LLM.
+     */
+    public static JSONObject analyzeFigmaComponents(FigmaNode document, String platform) throws Exception {
+        if (STRUCTURE_MEMO != null) {
+            StructureMemo.hashTree(document);
+        }
+        FigmaComponentExtractor.Inventory inventory = FigmaComponentExtractor.extract(document);
+        if (FRAME_STORE == null || inventory.getComponents().isEmpty()) {
+            return analyzeInventoryChunks(inventory, platform);
+        }
+
+        // Reuse the stored result of every frame whose content is unchanged
+        Map<String, List<FigmaComponentExtractor.Component>> frames = FrameAnalysisStore.framesOf(inventory);
+        Map<String, List<FigmaComponentExtractor.Component>> changedFrames = new LinkedHashMap<>();
+        Map<String, String> changedHashes = new HashMap<>();
+        FigmaComponentExtractor.Inventory changed = new FigmaComponentExtractor.Inventory();
+        List<JSONObject> parts = new ArrayList<>();
+        for (Map.Entry<String, List<FigmaComponentExtractor.Component>> frame : frames.entrySet()) {
+            String hash = FRAME_STORE.frameHash(platform, frame.getValue());
+            JSONArray stored = LLM_CACHE_BYPASS ? null : FRAME_STORE.get(hash);
+            if (stored != null) {
+                JSONObject part = new JSONObject();
+                part.put("components", stored);
+                parts.add(part);
+            } else {
+                changedFrames.put(frame.getKey(), frame.getValue());
+                changedHashes.put(frame.getKey(), hash);
+                changed.components.addAll(frame.getValue());
+            }
+        }
+        PipelineMetrics.FRAMES_REUSED.add(frames.size() - changedFrames.size());
+        System.out.println("✓ " + platform + ": " + changedFrames.size() + " of " + frames.size()
+                + " frames changed, " + (frames.size() - changedFrames.size()) + " reused");
+        if (changedFrames.isEmpty()) {
+            return mergeChunkAnalyses(platform, parts);
+        }
+
+        JSONObject fresh = analyzeInventoryChunks(changed, platform);
+        if (isComplete(fresh)) {
+            FRAME_STORE.putAll(changedFrames, changedHashes, fresh.getJSONArray("components"));
+        }
+        if (parts.isEmpty()) {
+            return fresh;
+        }
+        parts.add(fresh);
+        return mergeChunkAnalyses(platform, parts);
+    }
+
+    /**
+     * True when an analysis covers its whole inventory: a component list,
+     * no failed chunk and no output cut off at max_tokens. Only complete
+     * analyses may be stored for reuse.
+     */
+    static boolean isComplete(JSONObject analysis) {
+        return analysis.optJSONArray("components") != null && !analysis.has("errors")
+                && !analysis.optBoolean("truncated", false);
+    }
+
+    /**
+     * Analyzes an inventory with each distinct component structure sent to
+     * the LLM once: memoized structures are answered locally, the rest are
+     * represented by one entry each and the classification is copied to
+     * every component sharing the structure
+     */
+    private static JSONObject analyzeInventoryChunks(FigmaComponentExtractor.Inventory inventory, String platform)
+            throws Exception {
+        if (STRUCTURE_MEMO == null) {
+            return analyzeUniqueInventory(inventory, platform);
+        }
+
+        Map<Long, List<FigmaComponentExtractor.Component>> structures = new LinkedHashMap<>();
+        for (FigmaComponentExtractor.Component component : inventory.getComponents()) {
+            structures.computeIfAbsent(component.getStructureHash(), k -> new ArrayList<>()).add(component);
+        }
+
+        JSONArray components = new JSONArray();
+        FigmaComponentExtractor.Inventory unique = new FigmaComponentExtractor.Inventory();
+        for (List<FigmaComponentExtractor.Component> copies : structures.values()) {
+            JSONObject memoized = LLM_CACHE_BYPASS ? null
+                    : STRUCTURE_MEMO.get(platform, copies.get(0).getStructureHash());
+            if (memoized != null) {
+                PipelineMetrics.STRUCTURES_REUSED.increment();
+                addCopies(components, memoized, copies);
+            } else {
+                unique.components.add(copies.get(0).withRepeats(copies.size()));
+            }
+        }
+        System.out.println("✓ " + platform + ": " + inventory.getComponents().size() + " components, "
+                + structures.size() + " distinct structures, " + unique.getComponents().size() + " sent to the LLM");
+
+        JSONObject analysis = unique.getComponents().isEmpty() ? new JSONObject()
+                : analyzeUniqueInventory(unique, platform);
+        JSONArray analyzed = analysis.optJSONArray("components");
+        if (analyzed != null) {
+            Map<String, JSONObject> byId = new HashMap<>();
+            for (int i = 0; i < analyzed.length(); i++) {
+                JSONObject component = analyzed.optJSONObject(i);
+                if (component != null) {
+                    byId.put(component.optString("id", ""), component);
+                }
+            }
+            for (FigmaComponentExtractor.Component representative : unique.getComponents()) {
+                JSONObject result = byId.remove(representative.getId());
+                if (result != null) {
+                    STRUCTURE_MEMO.put(platform, representative.getStructureHash(), result);
+                    addCopies(components, result, structures.get(representative.getStructureHash()));
+                }
+            }
+            // Components the LLM reported under ids it was not given
+            for (JSONObject extra : byId.values()) {
+                components.put(extra);
+            }
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("platform", platform);
+        result.put("components", components);
+        if (analysis.has("errors")) {
+            result.put("errors", analysis.get("errors"));
+        } else if (analyzed == null && !unique.getComponents().isEmpty()) {
+            JSONArray errors = new JSONArray();
+            JSONObject error = new JSONObject();
+            error.put("error", analysis.optString("error", "No components in LLM response"));
+            errors.put(error);
+            result.put("errors", errors);
+        }
+        if (analysis.optBoolean("truncated", false)) {
+            result.put("truncated", true);
+        }
+        return result;
+    }
+
+    /**
+     * Adds one copy of a classification per component sharing its structure
+     */
+    private static void addCopies(JSONArray components, JSONObject classification,
+            List<FigmaComponentExtractor.Component> copies) {
+        for (FigmaComponentExtractor.Component copy : copies) {
+            JSONObject component = new JSONObject(classification.toString());
+            component.put("id", copy.getId());
+            components.put(component);
+        }
+    }
+
+    /**
+     * Analyzes an inventory, split into token-budgeted chunks when large
+     */
+    private static JSONObject analyzeUniqueInventory(FigmaComponentExtractor.Inventory inventory, String platform)
+            throws Exception {
+        List<InventoryChunker.Chunk> chunks = InventoryChunker.chunk(inventory, INPUT_TOKEN_BUDGET);
+        if (chunks.size() == 1) {
+            return analyzeInventory(chunks.get(0).toJSON(platform, 0, 1), platform);
+        }
+
+        // Map: one LLM call per chunk; the LLM client's adaptive concurrency limit bounds how many run at once
+        List<Future<JSONObject>> futures = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            JSONObject chunkJson = chunks.get(i).toJSON(platform, i, chunks.size());
+            futures.add(TASK_EXECUTOR.submit(() -> analyzeInventory(chunkJson, platform)));
+        }
+
+        // Reduce: concatenate component lists, dropping duplicate IDs
+        return mergeChunkAnalyses(platform, awaitAll(futures));
+    }
+
+    /**
+     * Sends one inventory (or inventory chunk) to the LLM for classification
+     */
+    private static JSONObject analyzeInventory(JSONObject inventoryJson, String platform) throws Exception {
+        long start = System.nanoTime();
+        String prompt = buildAnalysisPrompt(inventoryJson, platform);
+        PipelineMetrics.PROMPT_BUILD.observeSince(start);
 
         String systemPrompt = "You are a UI/UX expert specializing in cross-platform design analysis. " +
                 "You understand that the same functionality can be implemented differently across platforms: " +
                 "Android often uses search bars, material design buttons; " +
                 "iOS often uses search icons, native iOS controls; " +
                 "Web uses standard HTML elements. " +
-                "Be precise and extract all interactive components from the Figma JSON structure. " +
+                "Be precise and classify all interactive components from the component inventory. " +
                 "Always return valid JSON format.";
 
-        return callQuickMLLLM(prompt, systemPrompt, 2000);
+        JSONArray components = inventoryJson.optJSONArray("components");
+        int maxTokens = outputTokenBudget(ANALYSIS_BASE_TOKENS, ANALYSIS_TOKENS_PER_COMPONENT,
+                components == null ? 0 : components.length());
+        return callQuickMLLLM(prompt, systemPrompt, maxTokens);
+    }
+
+    /**
+     * Builds the component analysis prompt for one inventory
+     */
+    static String buildAnalysisPrompt(JSONObject inventoryJson, String platform) {
+        StringBuilder prompt = PromptSerializer.acquireBuffer();
+        prompt.append("Analyze this UI component inventory for ").append(platform)
+                .append(" platform and classify all UI components.\n\n")
+                .append("The inventory was extracted from a Figma design. Each entry has the Figma node id, ")
+                .append("a detected kind, the layer name, its visible text and its page/frame path. ")
+                .append("An entry with \"repeats\": N stands for N identical copies; list it once.\n\n");
+        PromptSerializer.appendLegend(prompt, inventoryJson);
+        prompt.append("Component inventory:\n");
+        PromptSerializer.append(prompt, inventoryJson);
+        prompt.append("\n\n" +
+                "Please identify and list all interactive UI components with the following details:\n" +
+                "1. Component type (button, search_bar, search_icon, input_field, text_field, dropdown, checkbox, icon, etc.)\n"
+                +
+                "2. Component name/label\n" +
+                "3. Component purpose/function\n" +
+                "4. Text content (if any)\n" +
+                "5. Component ID from Figma\n\n" +
+                "Return the response in this exact JSON format:\n" +
+                "{\n" +
+                "  \"platform\": \"").append(platform).append("\",\n" +
+                "  \"components\": [\n" +
+                "    {\n" +
+                "      \"id\": \"figma_node_id\",\n" +
+                "      \"type\": \"component_type\",\n" +
+                "      \"name\": \"component_name\",\n" +
+                "      \"purpose\": \"what_it_does\",\n" +
+                "      \"text\": \"visible_text\",\n" +
+                "      \"properties\": {}\n" +
+                "    }\n" +
+                "  ]\n" +
+                "}");
+        return PromptSerializer.release(prompt);
     }
 
     /**
-     * Maps components across three platforms
+     * Merges per-chunk analyses into one platform result. Components keep
+     * their first occurrence by ID; chunks whose response could not be
+     * parsed are reported under "errors", along with the errors of chunks
+     * that are merged results themselves. The result is "truncated" when any
+     * chunk was.
+     */
+    static JSONObject mergeChunkAnalyses(String platform, List<JSONObject> analyses) {
+        JSONArray components = new JSONArray();
+        JSONArray errors = new JSONArray();
+        Set<String> seenIds = new HashSet<>();
+        boolean truncated = false;
+
+        for (int i = 0; i < analyses.size(); i++) {
+            truncated |= analyses.get(i).optBoolean("truncated", false);
+            JSONArray chunkErrors = analyses.get(i).optJSONArray("errors");
+            if (chunkErrors != null) {
+                for (int j = 0; j < chunkErrors.length(); j++) {
+                    errors.put(chunkErrors.get(j));
+                }
+            }
+            JSONArray chunkComponents = analyses.get(i).optJSONArray("components");
+            if (chunkComponents == null) {
+                JSONObject error = new JSONObject();
+                error.put("part", i + 1);
+                error.put("error", analyses.get(i).optString("error", "No components in LLM response"));
+                errors.put(error);
+                continue;
+            }
+            for (int j = 0; j < chunkComponents.length(); j++) {
+                JSONObject component = chunkComponents.optJSONObject(j);
+                if (component == null) {
+                    continue;
+                }
+                String id = component.optString("id", null);
+                if (id == null || seenIds.add(id)) {
+                    components.put(component);
+                }
+            }
+        }
+
+        JSONObject merged = new JSONObject();
+        merged.put("platform", platform);
+        merged.put("components", components);
+        merged.put("chunks", analyses.size());
+        if (errors.length() > 0) {
+            merged.put("errors", errors);
+        }
+        if (truncated) {
+            merged.put("truncated", true);
+        }
+        return merged;
+    }
+
+    /**
+     * Waits for all futures in order; the first failure cancels the rest
+     */
+    static <T> List<T> awaitAll(List<Future<T>> futures) throws Exception {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : new Exception(cause);
+                }
+            }
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Maps components across three platforms. Obvious matches are resolved
+     * locally; only the unmatched leftovers are sent to the LLM.
      */
     public static JSONObject mapComponentsAcrossPlatforms(
             JSONObject androidComponents,
             JSONObject iosComponents,
             JSONObject webComponents) throws Exception {
+        long start = System.nanoTime();
+        try {
+            ComponentMatcher.Result local = MATCHER.match(androidComponents, iosComponents, webComponents);
+            if (local == null) {
+                // An analysis without a component list cannot be matched locally
+                return mapComponentsWithLLM(androidComponents, iosComponents, webComponents);
+            }
+
+            JSONObject llmMapping = null;
+            if (local.needsLLM()) {
+                try {
+                    llmMapping = mapComponentsWithLLM(local.getLeftovers(0), local.getLeftovers(1),
+                            local.getLeftovers(2));
+                } catch (Exception e) {
+                    // Keep the local mappings; the leftovers are reported as unmapped
+                    System.err.println("Warning: LLM mapping of unmatched components failed: " + e.getMessage());
+                    llmMapping = new JSONObject();
+                    llmMapping.put("error", String.valueOf(e.getMessage()));
+                }
+            }
+            return local.merge(llmMapping);
+        } finally {
+            PipelineMetrics.MAPPING.observeSince(start);
+        }
+    }
+
+    /**
+     * Maps components across three platforms using QuickML LLM
+     */
+    static JSONObject mapComponentsWithLLM(
+            JSONObject androidComponents,
+            JSONObject iosComponents,
+            JSONObject webComponents) throws Exception {
 
-        String prompt = String.format(
-                "You are analyzing UI designs across three platforms: Android, iOS, and Web.\n\n" +
-                        "ANDROID COMPONENTS:\n%s\n\n" +
-                        "IOS COMPONENTS:\n%s\n\n" +
-                        "WEB COMPONENTS:\n%s\n\n" +
-                        "Task: Map equivalent components across all three platforms. Components serve the SAME PURPOSE even if they look different.\n\n"
-                        +
-                        "Examples of equivalent components:\n" +
-                        "- Android \"Search Bar\" = iOS \"Search Icon\" = Web \"Search Input\"\n" +
-                        "- Android \"Book Ticket Button\" = iOS \"Book Ticket Button\" = Web \"Submit Button\"\n" +
-                        "- Android \"Date Picker\" = iOS \"Date Selector\" = Web \"Date Input\"\n\n" +
-                        "Return the mapping in this exact JSON format:\n" +
-                        "{\n" +
-                        "  \"mappings\": [\n" +
-                        "    {\n" +
-                        "      \"purpose\": \"search_functionality\",\n" +
-                        "      \"android\": {\n" +
-                        "        \"id\": \"component_id\",\n" +
-                        "        \"type\": \"search_bar\",\n" +
-                        "        \"name\": \"Search flights...\",\n" +
-                        "        \"implementation\": \"SearchBar component\"\n" +
-                        "      },\n" +
-                        "      \"ios\": {\n" +
-                        "        \"id\": \"component_id\",\n" +
-                        "        \"type\": \"search_icon\",\n" +
-                        "        \"name\": \"Search\",\n" +
-                        "        \"implementation\": \"Magnifying glass icon\"\n" +
-                        "      },\n" +
-                        "      \"web\": {\n" +
-                        "        \"id\": \"component_id\",\n" +
-                        "        \"type\": \"search_input\",\n" +
-                        "        \"name\": \"Search\",\n" +
-                        "        \"implementation\": \"Input field with search icon\"\n" +
-                        "      },\n" +
-                        "      \"consistency\": \"equivalent\",\n" +
-                        "      \"notes\": \"Same search functionality, different UI patterns\"\n" +
-                        "    }\n" +
-                        "  ],\n" +
-                        "  \"summary\": {\n" +
-                        "    \"total_mappings\": 0,\n" +
-                        "    \"consistent_components\": 0,\n" +
-                        "    \"missing_on_platforms\": [],\n" +
-                        "    \"inconsistencies\": []\n" +
-                        "  }\n" +
-                        "}",
-                androidComponents.toString(2),
-                iosComponents.toString(2),
-                webComponents.toString(2));
+        long start = System.nanoTime();
+        String prompt = buildMappingPrompt(androidComponents, iosComponents, webComponents);
+        PipelineMetrics.PROMPT_BUILD.observeSince(start);
 
         String systemPrompt = "You are an expert in cross-platform UI/UX design patterns. " +
                 "You understand platform-specific design guidelines: " +
@@ -153,17 +737,120 @@ public class PixelCheckComponentMapper {
                 "Focus on PURPOSE and FUNCTIONALITY, not just appearance. " +
                 "Always return valid JSON.";
 
-        return callQuickMLLLM(prompt, systemPrompt, 3000);
+        // Roughly one mapping per component of the largest platform
+        int expectedMappings = Math.max(componentCount(androidComponents),
+                Math.max(componentCount(iosComponents), componentCount(webComponents)));
+        int maxTokens = outputTokenBudget(MAPPING_BASE_TOKENS, MAPPING_TOKENS_PER_ENTRY, expectedMappings);
+        return callQuickMLLLM(prompt, systemPrompt, maxTokens);
+    }
+
+    private static int componentCount(JSONObject analysis) {
+        JSONArray components = analysis.optJSONArray("components");
+        return components == null ? 0 : components.length();
+    }
+
+    /**
+     * max_tokens for a response listing the given number of entries,
+     * clamped to [MIN_OUTPUT_TOKENS, pixelcheck.llm.maxOutputTokens]
+     */
+    static int outputTokenBudget(int baseTokens, int tokensPerEntry, int entries) {
+        long budget = baseTokens + (long) tokensPerEntry * entries;
+        return (int) Math.max(MIN_OUTPUT_TOKENS, Math.min(MAX_OUTPUT_TOKENS, budget));
+    }
+
+    /**
+     * Builds the cross-platform mapping prompt
+     */
+    static String buildMappingPrompt(
+            JSONObject androidComponents,
+            JSONObject iosComponents,
+            JSONObject webComponents) {
+
+        StringBuilder prompt = PromptSerializer.acquireBuffer();
+        prompt.append("You are analyzing UI designs across three platforms: Android, iOS, and Web.\n\n");
+        PromptSerializer.appendLegend(prompt, androidComponents, iosComponents, webComponents);
+        prompt.append("ANDROID COMPONENTS:\n");
+        PromptSerializer.append(prompt, androidComponents);
+        prompt.append("\n\nIOS COMPONENTS:\n");
+        PromptSerializer.append(prompt, iosComponents);
+        prompt.append("\n\nWEB COMPONENTS:\n");
+        PromptSerializer.append(prompt, webComponents);
+        prompt.append("\n\n" +
+                "Task: Map equivalent components across all three platforms. Components serve the SAME PURPOSE even if they look different.\n\n"
+                +
+                "Examples of equivalent components:\n" +
+                "- Android \"Search Bar\" = iOS \"Search Icon\" = Web \"Search Input\"\n" +
+                "- Android \"Book Ticket Button\" = iOS \"Book Ticket Button\" = Web \"Submit Button\"\n" +
+                "- Android \"Date Picker\" = iOS \"Date Selector\" = Web \"Date Input\"\n\n" +
+                "Return the mapping in this exact JSON format:\n" +
+                "{\n" +
+                "  \"mappings\": [\n" +
+                "    {\n" +
+                "      \"purpose\": \"search_functionality\",\n" +
+                "      \"android\": {\n" +
+                "        \"id\": \"component_id\",\n" +
+                "        \"type\": \"search_bar\",\n" +
+                "        \"name\": \"Search flights...\",\n" +
+                "        \"implementation\": \"SearchBar component\"\n" +
+                "      },\n" +
+                "      \"ios\": {\n" +
+                "        \"id\": \"component_id\",\n" +
+                "        \"type\": \"search_icon\",\n" +
+                "        \"name\": \"Search\",\n" +
+                "        \"implementation\": \"Magnifying glass icon\"\n" +
+                "      },\n" +
+                "      \"web\": {\n" +
+                "        \"id\": \"component_id\",\n" +
+                "        \"type\": \"search_input\",\n" +
+                "        \"name\": \"Search\",\n" +
+                "        \"implementation\": \"Input field with search icon\"\n" +
+                "      },\n" +
+                "      \"consistency\": \"equivalent\",\n" +
+                "      \"notes\": \"Same search functionality, different UI patterns\"\n" +
+                "    }\n" +
+                "  ],\n" +
+                "  \"summary\": {\n" +
+                "    \"total_mappings\": 0,\n" +
+                "    \"consistent_components\": 0,\n" +
+                "    \"missing_on_platforms\": [],\n" +
+                "    \"inconsistencies\": []\n" +
+                "  }\n" +
+                "}");
+        return PromptSerializer.release(prompt);
     }
 
     /**
      * Core function to call QuickML LLM API
      */
     private static JSONObject callQuickMLLLM(String prompt, String systemPrompt, int maxTokens) throws Exception {
+        return callQuickMLLLM(prompt, systemPrompt, maxTokens, false);
+    }
+
+    /**
+     * Calls QuickML LLM API, optionally bypassing the response cache.
+     * Responses cut off at max_tokens are resumed with continuation
+     * requests.
+     */
+    static JSONObject callQuickMLLLM(String prompt, String systemPrompt, int maxTokens, boolean bypassCache)
+            throws Exception {
+        JSONObject result = requestJson(prompt, systemPrompt, maxTokens, bypassCache);
+        if (result.optBoolean("truncated", false)) {
+            result = continueTruncated(result, prompt, systemPrompt, maxTokens, bypassCache);
+        }
+        return result;
+    }
+
+    /**
+     * One QuickML call, served from the cache or coalesced with an
+     * identical call in flight; the JSON is marked "truncated" when the
+     * output hit max_tokens
+     */
+    private static JSONObject requestJson(String prompt, String systemPrompt, int maxTokens, boolean bypassCache)
+            throws Exception {
         // Create request payload
         JSONObject payload = new JSONObject();
         payload.put("prompt", prompt);
-        payload.put("model", MODEL_NAME);
+        payload.put("model", LLM_CLIENT.model());
         payload.put("system_prompt", systemPrompt);
         payload.put("top_p", 0.9);
         payload.put("top_k", 50);
@@ -171,51 +858,142 @@ public class PixelCheckComponentMapper {
         payload.put("temperature", 0.7);
         payload.put("max_tokens", maxTokens);
 
-        // Create HTTP client
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(QUICKML_ENDPOINT))
-                .header("Content-Type", "application/json")
-                .header("Authorization", AUTHORIZATION_TOKEN)
-                .header("CATALYST-ORG", CATALYST_ORG)
-                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                .build();
+        // Serve identical requests from the response cache; identical
+        // requests already in flight share one QuickML call
+        String cacheKey = LlmResponseCache.key(LLM_CLIENT.identity(), payload);
+        LlmClient.Completion completion = LLM_FLIGHTS.execute(bypassCache ? cacheKey + "!" : cacheKey, () -> {
+            if (LLM_CACHE != null) {
+                String cached = LLM_CACHE.get(cacheKey, bypassCache);
+                if (cached != null) {
+                    PipelineMetrics.LLM_CACHE_HITS.increment();
+                    return new LlmClient.Completion(cached, null);
+                }
+            }
+            long start = System.nanoTime();
+            LlmClient.Completion fresh;
+            try {
+                fresh = LLM_CLIENT.complete(payload);
+            } catch (Exception e) {
+                PipelineMetrics.LLM_ERRORS.increment();
+                throw e;
+            } finally {
+                PipelineMetrics.LLM_CALL.observeSince(start);
+            }
+            PipelineMetrics.LLM_PROMPT_CHARS.add(prompt.length() + systemPrompt.length());
+            PipelineMetrics.LLM_RESPONSE_CHARS.add(fresh.getText().length());
+            if (fresh.hitTokenLimit()) {
+                PipelineMetrics.LLM_TRUNCATIONS.increment();
+            }
+            if (LLM_CACHE != null) {
+                LLM_CACHE.put(cacheKey, fresh.getText());
+            }
+            return fresh;
+        });
 
-        // Send request
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        // Cached responses carry no finish_reason; the unbalanced JSON tail
+        // still marks them as truncated
+        long start = System.nanoTime();
+        JSONObject result = extractJsonResponse(completion.getText());
+        PipelineMetrics.JSON_EXTRACTION.observeSince(start);
+        if (completion.hitTokenLimit() && !result.has("rawResponse")) {
+            result.put("truncated", true);
+        }
+        return result;
+    }
 
-        if (response.statusCode() != 200) {
-            throw new Exception("QuickML LLM API error (" + response.statusCode() + "): " + response.body());
+    /**
+     * Resumes a response cut off at max_tokens: asks for the entries after
+     * the last complete element of its components/mappings array and
+     * stitches them on, up to pixelcheck.llm.maxContinuations times
+     */
+    private static JSONObject continueTruncated(JSONObject result, String prompt, String systemPrompt,
+            int maxTokens, boolean bypassCache) throws Exception {
+        String arrayKey = result.has("components") ? "components" : result.has("mappings") ? "mappings" : null;
+        JSONArray entries = arrayKey == null ? null : result.optJSONArray(arrayKey);
+        if (entries == null) {
+            return result;
         }
 
-        // Parse response
-        JSONObject responseJson = new JSONObject(response.body());
+        for (int attempt = 1; attempt <= MAX_CONTINUATIONS; attempt++) {
+            System.out.println("  ↻ Output truncated after " + entries.length() + " " + arrayKey
+                    + ", requesting continuation " + attempt);
+            JSONObject continuation = requestJson(
+                    buildContinuationPrompt(prompt, arrayKey, entries), systemPrompt, maxTokens, bypassCache);
+            JSONArray more = continuation.optJSONArray(arrayKey);
+            int added = more == null ? 0 : appendNewEntries(entries, more);
 
-        // Extract the actual response text
-        String responseText;
-        if (responseJson.has("response")) {
-            responseText = responseJson.getString("response");
-        } else if (responseJson.has("choices")) {
-            responseText = responseJson.getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
-        } else {
-            throw new Exception("Unexpected response format from QuickML LLM");
+            // Fields after the array (e.g. the mapping summary) come from the continuation
+            for (String key : continuation.keySet()) {
+                if (!key.equals(arrayKey) && !key.equals("truncated") && !result.has(key)) {
+                    result.put(key, continuation.get(key));
+                }
+            }
+            if (added == 0 || !continuation.optBoolean("truncated", false)) {
+                if (!continuation.optBoolean("truncated", false)) {
+                    result.remove("truncated");
+                }
+                break;
+            }
         }
+        return result;
+    }
 
-        // Try to parse the response as JSON
-        try {
-            // Extract JSON from the response text
-            int jsonStart = responseText.indexOf("{");
-            int jsonEnd = responseText.lastIndexOf("}") + 1;
-            if (jsonStart >= 0 && jsonEnd > jsonStart) {
-                String jsonStr = responseText.substring(jsonStart, jsonEnd);
-                return new JSONObject(jsonStr);
+    /**
+     * Appends entries not already present (by id, else by content);
+     * returns how many were added
+     */
+    static int appendNewEntries(JSONArray entries, JSONArray more) {
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < entries.length(); i++) {
+            seen.add(entryKey(entries.get(i)));
+        }
+        int added = 0;
+        for (int i = 0; i < more.length(); i++) {
+            Object entry = more.get(i);
+            if (seen.add(entryKey(entry))) {
+                entries.put(entry);
+                added++;
             }
-        } catch (Exception e) {
-            System.err.println("Warning: Could not parse LLM response as JSON");
         }
+        return added;
+    }
+
+    private static String entryKey(Object entry) {
+        if (entry instanceof JSONObject && ((JSONObject) entry).has("id")) {
+            return "id:" + ((JSONObject) entry).get("id");
+        }
+        return String.valueOf(entry);
+    }
+
+    /**
+     * Prompt asking the model to resume an array after the entries it
+     * already returned
+     */
+    static String buildContinuationPrompt(String prompt, String arrayKey, JSONArray received) {
+        Object last = received.length() == 0 ? null : received.get(received.length() - 1);
+        return prompt + "\n\n" +
+                "Your previous response was cut off after " + received.length() + " \"" + arrayKey
+                + "\" entries. " +
+                (last == null ? "" : "The last complete entry was:\n" + last + "\n") +
+                "Continue from the entry after it. Return the same JSON format containing ONLY the remaining \""
+                + arrayKey + "\" entries, followed by any fields that come after the array.";
+    }
+
+    /**
+     * Extracts the JSON object from an LLM response text, repairing output
+     * cut off at max_tokens, or wraps the raw text with an error when none
+     * can be parsed
+     */
+    static JSONObject extractJsonResponse(String responseText) {
+        JSONObject json = JsonResponseExtractor.extract(responseText);
+        if (json != null) {
+            if (json.optBoolean("truncated", false)) {
+                System.err.println("Warning: LLM response was truncated; using the repaired partial JSON");
+            }
+            return json;
+        }
+        PipelineMetrics.JSON_FAILURES.increment();
+        System.err.println("Warning: Could not parse LLM response as JSON");
 
         // Return raw response wrapped in JSON
         JSONObject result = new JSONObject();
@@ -230,13 +1008,71 @@ public class PixelCheckComponentMapper {
     public static String extractFigmaFileKey(String figmaUrl) throws Exception {
         // Figma URL format: https://www.figma.com/file/{fileKey}/{fileName}
         // or: https://www.figma.com/design/{fileKey}/{fileName}
-        String[] parts = figmaUrl.split("/");
-        for (int i = 0; i < parts.length; i++) {
-            if ((parts[i].equals("file") || parts[i].equals("design")) && i + 1 < parts.length) {
-                return parts[i + 1];
+        return FigmaUrl.parse(figmaUrl).getFileKey();
+    }
+
+    /**
+     * Runs one platform's fetch → analyze chain for a whole file
+     */
+    static JSONObject analyzePlatform(String fileKey, String platform, String figmaAccessToken)
+            throws Exception {
+        FigmaUrl url = new FigmaUrl(fileKey, null);
+        return analyzePlatform(url, platform, figmaAccessToken, List.of(url));
+    }
+
+    /**
+     * Runs one platform's fetch → analyze chain for the design a URL
+     * points at; run lists all URLs fetched together with it
+     */
+    static JSONObject analyzePlatform(FigmaUrl url, String platform, String figmaAccessToken, List<FigmaUrl> run)
+            throws Exception {
+        FigmaNode document = fetchDesign(url, run, figmaAccessToken);
+        System.out.println("✓ " + platform + " design fetched");
+        JSONObject analysis = analyzeFigmaComponents(document, platform);
+        System.out.println("✓ " + platform + " components analyzed");
+        return analysis;
+    }
+
+    /**
+     * Runs the fetch → analyze chain of every platform in parallel.
+     * Results are returned in the order of the given platforms; the first
+     * failing platform cancels the chains that are still running. Each
+     * analysis is written to the sink (if any) as soon as it completes.
+     */
+    static JSONObject[] analyzePlatformsConcurrently(String[] platforms, FigmaUrl[] urls, String figmaAccessToken,
+            ResultSink sink, String run) throws Exception {
+        CompletionService<JSONObject> completion = new ExecutorCompletionService<>(TASK_EXECUTOR);
+        Map<Future<JSONObject>, Integer> pending = new HashMap<>();
+        List<FigmaUrl> designs = Arrays.asList(urls);
+        for (int i = 0; i < platforms.length; i++) {
+            final String platform = platforms[i];
+            final FigmaUrl url = urls[i];
+            pending.put(completion.submit(() -> analyzePlatform(url, platform, figmaAccessToken, designs)), i);
+        }
+
+        JSONObject[] results = new JSONObject[platforms.length];
+        try {
+            while (!pending.isEmpty()) {
+                Future<JSONObject> done = completion.take();
+                int index = pending.remove(done);
+                try {
+                    results[index] = done.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    System.err.println("✗ " + platforms[index] + " failed: " + cause.getMessage());
+                    throw new Exception(platforms[index] + " analysis failed: " + cause.getMessage(), cause);
+                }
+                if (sink != null) {
+                    sink.writeAnalysis(run, platforms[index], results[index]);
+                }
+            }
+        } finally {
+            // Interrupts the in-flight HTTP calls of the remaining platforms
+            for (Future<JSONObject> future : pending.keySet()) {
+                future.cancel(true);
             }
         }
-        throw new Exception("Invalid Figma URL format");
+        return results;
     }
 
     /**
@@ -247,40 +1083,72 @@ public class PixelCheckComponentMapper {
             String iosUrl,
             String webUrl,
             String figmaAccessToken) throws Exception {
+        return analyzeAndMapPlatforms(androidUrl, iosUrl, webUrl, figmaAccessToken, null, null);
+    }
+
+    /**
+     * Complete workflow that also streams each analysis and the mapping to
+     * the given sink as they are produced
+     */
+    public static JSONObject analyzeAndMapPlatforms(
+            String androidUrl,
+            String iosUrl,
+            String webUrl,
+            String figmaAccessToken,
+            ResultSink sink,
+            String run) throws Exception {
 
         System.out.println("=== PixelCheck Component Mapper ===\n");
+        long runStart = System.nanoTime();
+        try {
+            JSONObject result = analyzeAndMap(androidUrl, iosUrl, webUrl, figmaAccessToken, sink, run);
+            PipelineMetrics.RUNS.increment();
+            return result;
+        } catch (Exception e) {
+            PipelineMetrics.RUN_FAILURES.increment();
+            throw e;
+        } finally {
+            PipelineMetrics.RUN.observeSince(runStart);
+        }
+    }
 
+    private static JSONObject analyzeAndMap(String androidUrl, String iosUrl, String webUrl,
+            String figmaAccessToken, ResultSink sink, String run) throws Exception {
         // Step 1: Extract file keys
         System.out.println("Step 1: Extracting Figma file keys...");
-        String androidKey = extractFigmaFileKey(androidUrl);
-        String iosKey = extractFigmaFileKey(iosUrl);
-        String webKey = extractFigmaFileKey(webUrl);
+        long start = System.nanoTime();
+        FigmaUrl androidDesign = FigmaUrl.parse(androidUrl);
+        FigmaUrl iosDesign = FigmaUrl.parse(iosUrl);
+        FigmaUrl webDesign = FigmaUrl.parse(webUrl);
+        PipelineMetrics.KEY_EXTRACTION.observeSince(start);
         System.out.println("✓ File keys extracted\n");
 
-        // Step 2: Fetch Figma JSON data
-        System.out.println("Step 2: Fetching Figma designs...");
-        JSONObject androidData = fetchFigmaJSON(androidKey, figmaAccessToken);
-        System.out.println("✓ Android design fetched");
-        JSONObject iosData = fetchFigmaJSON(iosKey, figmaAccessToken);
-        System.out.println("✓ iOS design fetched");
-        JSONObject webData = fetchFigmaJSON(webKey, figmaAccessToken);
-        System.out.println("✓ Web design fetched\n");
-
-        // Step 3: Analyze each platform with LLM
-        System.out.println("Step 3: Analyzing components with QuickML LLM...");
-        JSONObject androidAnalysis = analyzeFigmaComponents(androidData, "Android");
-        System.out.println("✓ Android components analyzed");
-        JSONObject iosAnalysis = analyzeFigmaComponents(iosData, "iOS");
-        System.out.println("✓ iOS components analyzed");
-        JSONObject webAnalysis = analyzeFigmaComponents(webData, "Web");
-        System.out.println("✓ Web components analyzed\n");
-
-        // Step 4: Map components across platforms
-        System.out.println("Step 4: Mapping components across platforms...");
+        // Step 2: Fetch and analyze each platform concurrently
+        System.out.println("Step 2: Fetching and analyzing Figma designs with QuickML LLM...");
+        String[] platformNames = { "Android", "iOS", "Web" };
+        FigmaUrl[] designs = { androidDesign, iosDesign, webDesign };
+        JSONObject[] analyses = analyzePlatformsConcurrently(platformNames, designs, figmaAccessToken, sink, run);
+        JSONObject androidAnalysis = analyses[0];
+        JSONObject iosAnalysis = analyses[1];
+        JSONObject webAnalysis = analyses[2];
+        System.out.println("✓ All platforms analyzed\n");
+
+        // Step 3: Map components across platforms
+        System.out.println("Step 3: Mapping components across platforms...");
         JSONObject mapping = mapComponentsAcrossPlatforms(androidAnalysis, iosAnalysis, webAnalysis);
+        if (sink != null) {
+            sink.writeMapping(run, mapping);
+        }
         System.out.println("✓ Component mapping complete\n");
 
-        // Create final result
+        return buildResult(androidAnalysis, iosAnalysis, webAnalysis, mapping);
+    }
+
+    /**
+     * Creates the final result of one (android, ios, web) run
+     */
+    static JSONObject buildResult(JSONObject androidAnalysis, JSONObject iosAnalysis, JSONObject webAnalysis,
+            JSONObject mapping) {
         JSONObject result = new JSONObject();
         result.put("success", true);
 
@@ -307,8 +1175,39 @@ public class PixelCheckComponentMapper {
             return;
         }
 
+        printMapping(results.getJSONObject("mapping"));
+    }
+
+    /**
+     * Prints the results of a ResultSink file one record at a time, so
+     * memory stays bounded by the largest single record
+     */
+    public static void printResults(Path resultsFile) throws IOException {
+        System.out.println("\n=== ANALYSIS RESULTS ===\n");
+        int[] runs = new int[1];
+        ResultSink.forEach(resultsFile, record -> {
+            String run = record.optString("run", "");
+            switch (record.optString("type")) {
+                case "mapping":
+                    if (runs[0]++ > 0 || !RESULT_RUN.equals(run)) {
+                        System.out.println("▶ " + run + "\n");
+                    }
+                    printMapping(record.getJSONObject("mapping"));
+                    break;
+                case "result":
+                    if (!record.optBoolean("success", false)) {
+                        System.out.println("❌ " + (RESULT_RUN.equals(run) ? "" : run + ": ") + "Analysis failed: "
+                                + record.optString("error", "Unknown error"));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
+
+    private static void printMapping(JSONObject mapping) {
         // Print summary
-        JSONObject mapping = results.getJSONObject("mapping");
         if (mapping.has("mappings")) {
             JSONArray mappings = mapping.getJSONArray("mappings");
             System.out.println("📊 Summary:");
@@ -354,12 +1253,56 @@ public class PixelCheckComponentMapper {
         }
     }
 
+    /**
+     * Opens the Figma and QuickML connections ahead of the first request
+     */
+    static void prewarmConnections() {
+        HttpTransport.prewarm(HttpTransport.FIGMA, FIGMA_API_BASE);
+        LLM_CLIENT.prewarm();
+    }
+
+    /**
+     * Prints cache and request coalescing statistics
+     */
+    static void printStats() {
+        if (LLM_CACHE != null) {
+            System.out.println(LLM_CACHE.stats());
+        }
+        System.out.println(FIGMA_JSON_FLIGHTS.stats());
+        System.out.println(FIGMA_DOCUMENT_FLIGHTS.stats());
+        System.out.println(FIGMA_NODES_FLIGHTS.stats());
+        System.out.println(LLM_FLIGHTS.stats());
+        System.out.println(LLM_CLIENT.stats());
+        System.out.println(FIGMA_LIMITER.stats());
+        if (FRAME_STORE != null) {
+            System.out.println(FRAME_STORE.stats());
+        }
+        if (STRUCTURE_MEMO != null) {
+            System.out.println(STRUCTURE_MEMO.stats());
+        }
+        String traffic = HttpTransport.trafficStats();
+        if (traffic != null) {
+            System.out.println(traffic);
+        }
+    }
+
     /**
      * Main method for testing
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--server")) {
+            PixelCheckServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         if (args.length < 4) {
             System.out.println("Usage: java PixelCheckComponentMapper <figma_token> <android_url> <ios_url> <web_url>");
+            System.out.println("       java PixelCheckComponentMapper --server [port]");
+            System.out.println("       java PixelCheckComponentMapper --batch <figma_token> <manifest> [output]");
             System.out.println("\nExample:");
             System.out.println(
                     "  java PixelCheckComponentMapper figd_xxx https://figma.com/file/abc/android https://figma.com/file/def/ios https://figma.com/file/ghi/web");
@@ -371,19 +1314,25 @@ public class PixelCheckComponentMapper {
         String iosUrl = args[2];
         String webUrl = args[3];
 
-        try {
-            JSONObject results = analyzeAndMapPlatforms(androidUrl, iosUrl, webUrl, figmaToken);
-            printResults(results);
+        if (HttpTransport.prewarmEnabled()) {
+            prewarmConnections();
+        }
 
-            // Optionally save to file
-            try (FileWriter file = new FileWriter("pixelcheck_results.json")) {
-                file.write(results.toString(2));
-                System.out.println("✓ Results saved to pixelcheck_results.json");
+        // Results are streamed to disk as they are produced
+        Path resultsFile = ResultSink.outputPath("pixelcheck_results.ndjson");
+        try (ResultSink sink = ResultSink.open(resultsFile)) {
+            try {
+                analyzeAndMapPlatforms(androidUrl, iosUrl, webUrl, figmaToken, sink, RESULT_RUN);
+                sink.writeSuccess(RESULT_RUN);
+            } catch (Exception e) {
+                sink.writeFailure(RESULT_RUN, e.getMessage());
+                System.err.println("❌ Error: " + e.getMessage());
+                e.printStackTrace();
             }
-
-        } catch (Exception e) {
-            System.err.println("❌ Error: " + e.getMessage());
-            e.printStackTrace();
         }
+
+        printResults(resultsFile);
+        printStats();
+        System.out.println("✓ Results saved to " + resultsFile);
     }
 }
@@ -0,0 +1,205 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - HTTP service mode
+ * Long-running JSON API around PixelCheckComponentMapper so interactive
+ * checks run on a warm JVM and share the Figma/LLM caches and pooled
+ * connections across requests. Requests are handled concurrently on the
+ * shared task executor.
+ *
+ * Endpoints (all POST with a JSON body unless noted):
+ *   GET  /health
+ *   GET  /metrics        PipelineMetrics in Prometheus text format
+ *   POST /analyze        {"url": figma_url, "platform": "Android", "figmaToken": "figd_..."}
+ *   POST /map            {"android": analysis, "ios": analysis, "web": analysis}
+ *   POST /analyzeAndMap  {"android": url, "ios": url, "web": url, "figmaToken": "figd_..."}
+ *
+ * The Figma token may also be sent as an X-Figma-Token header.
+ *
+ * The server holds the QuickML credentials, so it listens on loopback
+ * only unless -Dpixelcheck.server.bindAddress names a wider address
+ * (e.g. 0.0.0.0 behind an authenticating proxy).
+ */
+public class PixelCheckServer {
+
+    private final HttpServer server;
+
+    /**
+     * Client errors (bad JSON, missing fields) reported as HTTP 400
+     */
+    private static class BadRequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Handler body that turns a JSON request into a JSON response
+     */
+    private interface JsonEndpoint {
+        JSONObject handle(JSONObject request, HttpExchange exchange) throws Exception;
+    }
+
+    public PixelCheckServer(int port) throws IOException {
+        String bindAddress = System.getProperty("pixelcheck.server.bindAddress");
+        InetAddress address = bindAddress == null || bindAddress.isBlank() ? InetAddress.getLoopbackAddress()
+                : InetAddress.getByName(bindAddress.trim());
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.setExecutor(PixelCheckComponentMapper.TASK_EXECUTOR);
+
+        server.createContext("/health", exchange -> {
+            JSONObject status = new JSONObject();
+            status.put("status", "ok");
+            send(exchange, 200, status);
+        });
+        server.createContext("/metrics", exchange -> {
+            byte[] bytes = PipelineMetrics.prometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/analyze", post(PixelCheckServer::analyze));
+        server.createContext("/map", post(PixelCheckServer::map));
+        server.createContext("/analyzeAndMap", post(PixelCheckServer::analyzeAndMap));
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("✓ PixelCheck server listening on " + server.getAddress().getAddress().getHostAddress()
+                + ":" + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static JSONObject analyze(JSONObject request, HttpExchange exchange) throws Exception {
+        String url = required(request, "url");
+        String platform = request.optString("platform", "Web");
+        FigmaUrl design = parseUrl(url);
+        return PixelCheckComponentMapper.analyzePlatform(design, platform, figmaToken(request, exchange),
+                List.of(design));
+    }
+
+    private static JSONObject map(JSONObject request, HttpExchange exchange) throws Exception {
+        return PixelCheckComponentMapper.mapComponentsAcrossPlatforms(
+                requiredObject(request, "android"),
+                requiredObject(request, "ios"),
+                requiredObject(request, "web"));
+    }
+
+    private static JSONObject analyzeAndMap(JSONObject request, HttpExchange exchange) throws Exception {
+        String android = required(request, "android");
+        String ios = required(request, "ios");
+        String web = required(request, "web");
+        parseUrl(android);
+        parseUrl(ios);
+        parseUrl(web);
+        return PixelCheckComponentMapper.analyzeAndMapPlatforms(android, ios, web, figmaToken(request, exchange));
+    }
+
+    /**
+     * Wraps a JSON endpoint: POST only, parses the body, maps failures to
+     * {"success": false, "error": ...} responses
+     */
+    private static HttpHandler post(JsonEndpoint endpoint) {
+        return exchange -> {
+            try {
+                if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                    send(exchange, 405, error("Use POST"));
+                    return;
+                }
+                JSONObject request;
+                try (InputStream body = exchange.getRequestBody()) {
+                    request = new JSONObject(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+                } catch (JSONException e) {
+                    throw new BadRequestException("Request body is not a JSON object: " + e.getMessage());
+                }
+                send(exchange, 200, endpoint.handle(request, exchange));
+            } catch (BadRequestException e) {
+                send(exchange, 400, error(e.getMessage()));
+            } catch (Exception e) {
+                System.err.println("❌ " + exchange.getRequestURI().getPath() + " failed: " + e.getMessage());
+                send(exchange, 500, error(e.getMessage()));
+            }
+        };
+    }
+
+    private static FigmaUrl parseUrl(String url) throws BadRequestException {
+        try {
+            return FigmaUrl.parse(url);
+        } catch (Exception e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    private static String figmaToken(JSONObject request, HttpExchange exchange) throws BadRequestException {
+        String token = request.optString("figmaToken", exchange.getRequestHeaders().getFirst("X-Figma-Token"));
+        if (token == null || token.isBlank()) {
+            throw new BadRequestException("Missing figmaToken");
+        }
+        return token;
+    }
+
+    private static String required(JSONObject request, String field) throws BadRequestException {
+        String value = request.optString(field, null);
+        if (value == null || value.isBlank()) {
+            throw new BadRequestException("Missing " + field);
+        }
+        return value;
+    }
+
+    private static JSONObject requiredObject(JSONObject request, String field) throws BadRequestException {
+        JSONObject value = request.optJSONObject(field);
+        if (value == null) {
+            throw new BadRequestException("Missing " + field + " analysis");
+        }
+        return value;
+    }
+
+    private static JSONObject error(String message) {
+        JSONObject error = new JSONObject();
+        error.put("success", false);
+        error.put("error", message == null ? "Unknown error" : message);
+        return error;
+    }
+
+    private static void send(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Starts the server: java PixelCheckServer [port]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("pixelcheck.server.port", 8080);
+        if (HttpTransport.prewarmEnabled()) {
+            PixelCheckComponentMapper.prewarmConnections();
+        }
+        new PixelCheckServer(port).start();
+    }
+}
@@ -0,0 +1,292 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Compact prompt serialization
+ * Writes the JSON embedded in LLM prompts with as few tokens as possible.
+ * Lists of objects become tables (one header line with the column names,
+ * one |-separated line per entry) so key names are written once instead of
+ * per entry; long strings repeated across the table (paths, names, types)
+ * are written once in a dictionary and referenced as $n. Anything that is
+ * not a list of objects is written as minified JSON.
+ *
+ * Prompts are built in pooled StringBuilders rather than through
+ * String.format copies.
+ *
+ * Configuration: -Dpixelcheck.prompt.format=compact (default), json
+ * (minified JSON) or pretty (indented JSON, the previous format)
+ */
+public class PromptSerializer {
+
+    public enum Format {
+        COMPACT, JSON, PRETTY
+    }
+
+    private static final Format FORMAT = Format.valueOf(
+            System.getProperty("pixelcheck.prompt.format", "compact").trim().toUpperCase());
+
+    /**
+     * Explains the compact format to the model; added once per prompt
+     */
+    public static final String COMPACT_LEGEND =
+            "Data format: a list is written as a header line \"name[count]: column|column|...\" followed by " +
+            "one line per entry with its cells separated by |. An empty cell means no value, \"\" is an " +
+            "empty string, a cell $n stands for entry n of the dictionary in the same section, " +
+            "\\| \\$ \\\" \\n \\\\ are escaped characters, and everything else is plain text, a number or JSON.";
+
+    // Strings shorter than this are never worth a dictionary entry
+    private static final int MIN_DICTIONARY_LENGTH = 6;
+
+    private static final int MAX_POOLED_BUFFERS = 16;
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+    private static final ConcurrentLinkedQueue<StringBuilder> BUFFERS = new ConcurrentLinkedQueue<>();
+
+    /**
+     * An empty buffer for building one prompt; hand it back with release()
+     */
+    public static StringBuilder acquireBuffer() {
+        StringBuilder buffer = BUFFERS.poll();
+        return buffer != null ? buffer : new StringBuilder(8192);
+    }
+
+    /**
+     * Returns the buffer's content and puts the buffer back in the pool
+     */
+    public static String release(StringBuilder buffer) {
+        String text = buffer.toString();
+        if (buffer.capacity() <= MAX_POOLED_CAPACITY && BUFFERS.size() < MAX_POOLED_BUFFERS) {
+            buffer.setLength(0);
+            BUFFERS.offer(buffer);
+        }
+        return text;
+    }
+
+    /**
+     * Appends the legend when any of the values will be written as a table
+     */
+    public static void appendLegend(StringBuilder out, JSONObject... values) {
+        if (FORMAT != Format.COMPACT) {
+            return;
+        }
+        for (JSONObject value : values) {
+            for (String key : value.keySet()) {
+                if (isTable(value.opt(key))) {
+                    out.append(COMPACT_LEGEND).append("\n\n");
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a JSON object in the configured format
+     */
+    public static void append(StringBuilder out, JSONObject json) {
+        switch (FORMAT) {
+            case PRETTY:
+                out.append(json.toString(2));
+                break;
+            case JSON:
+                out.append(json.toString());
+                break;
+            default:
+                appendCompact(out, json);
+        }
+    }
+
+    /**
+     * Scalars first as "key: value", then nested values: lists of objects
+     * as tables, anything else as minified JSON
+     */
+    static void appendCompact(StringBuilder out, JSONObject json) {
+        List<String> keys = new ArrayList<>(json.keySet());
+        Collections.sort(keys);
+        List<String> nested = new ArrayList<>();
+        for (String key : keys) {
+            Object value = json.opt(key);
+            if (value instanceof JSONObject || value instanceof JSONArray) {
+                nested.add(key);
+            } else {
+                out.append(key).append(": ");
+                appendCell(out, value, Collections.emptyMap());
+                out.append('\n');
+            }
+        }
+
+        Map<String, Integer> dictionary = dictionary(json, nested);
+        if (!dictionary.isEmpty()) {
+            out.append("dictionary:\n");
+            for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+                out.append('$').append(entry.getValue()).append(" = ");
+                appendEscaped(out, entry.getKey());
+                out.append('\n');
+            }
+        }
+
+        for (String key : nested) {
+            Object value = json.opt(key);
+            if (isTable(value)) {
+                appendTable(out, key, (JSONArray) value, dictionary);
+            } else {
+                out.append(key).append(": ").append(value).append('\n');
+            }
+        }
+        trimNewline(out);
+    }
+
+    /**
+     * A non-empty array whose elements are all objects
+     */
+    private static boolean isTable(Object value) {
+        if (!(value instanceof JSONArray) || ((JSONArray) value).length() == 0) {
+            return false;
+        }
+        JSONArray array = (JSONArray) value;
+        for (int i = 0; i < array.length(); i++) {
+            if (!(array.opt(i) instanceof JSONObject)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendTable(StringBuilder out, String name, JSONArray rows,
+            Map<String, Integer> dictionary) {
+        List<String> columns = columns(rows);
+        out.append(name).append('[').append(rows.length()).append("]: ");
+        for (int c = 0; c < columns.size(); c++) {
+            if (c > 0) {
+                out.append('|');
+            }
+            out.append(columns.get(c));
+        }
+        out.append('\n');
+        for (int i = 0; i < rows.length(); i++) {
+            JSONObject row = rows.optJSONObject(i);
+            for (int c = 0; c < columns.size(); c++) {
+                if (c > 0) {
+                    out.append('|');
+                }
+                appendCell(out, row.opt(columns.get(c)), dictionary);
+            }
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Union of the rows' keys: "id" first, the rest alphabetically, so the
+     * same data always gives the same prompt
+     */
+    private static List<String> columns(JSONArray rows) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < rows.length(); i++) {
+            keys.addAll(rows.optJSONObject(i).keySet());
+        }
+        List<String> columns = new ArrayList<>(keys);
+        Collections.sort(columns, (a, b) -> a.equals("id") ? -1 : b.equals("id") ? 1 : a.compareTo(b));
+        return columns;
+    }
+
+    private static void appendCell(StringBuilder out, Object value, Map<String, Integer> dictionary) {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            return;
+        }
+        if (value instanceof String) {
+            String text = (String) value;
+            Integer reference = dictionary.get(text);
+            if (reference != null) {
+                out.append('$').append(reference);
+            } else if (text.isEmpty()) {
+                out.append("\"\"");
+            } else if (text.equals("\"\"")) {
+                // Two literal quotes, not the empty string
+                out.append("\\\"\\\"");
+            } else {
+                appendEscaped(out, text);
+            }
+        } else if (value instanceof JSONObject && ((JSONObject) value).length() == 0
+                || value instanceof JSONArray && ((JSONArray) value).length() == 0) {
+            // Empty nested values carry nothing for the model
+        } else if (value instanceof JSONObject || value instanceof JSONArray) {
+            appendEscaped(out, value.toString());
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '|':
+                    out.append("\\|");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                case '$':
+                    // Every $, so "$1" inside text is never read as a reference
+                    out.append("\\$");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Strings of the nested tables worth replacing by $n: those where the
+     * references plus the dictionary line are shorter than the repetitions.
+     * Numbered in order of first appearance.
+     */
+    private static Map<String, Integer> dictionary(JSONObject json, List<String> nested) {
+        Map<String, int[]> counts = new LinkedHashMap<>();
+        for (String key : nested) {
+            Object value = json.opt(key);
+            if (!isTable(value)) {
+                continue;
+            }
+            JSONArray rows = (JSONArray) value;
+            for (int i = 0; i < rows.length(); i++) {
+                JSONObject row = rows.optJSONObject(i);
+                for (String column : row.keySet()) {
+                    Object cell = row.opt(column);
+                    if (cell instanceof String && ((String) cell).length() >= MIN_DICTIONARY_LENGTH) {
+                        counts.computeIfAbsent((String) cell, k -> new int[1])[0]++;
+                    }
+                }
+            }
+        }
+
+        Map<String, Integer> ordered = new LinkedHashMap<>();
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            int length = entry.getKey().length();
+            int count = entry.getValue()[0];
+            int referenceLength = 1 + String.valueOf(ordered.size()).length();
+            if (count > 1 && count * (length - referenceLength) > length + referenceLength + 4) {
+                ordered.put(entry.getKey(), ordered.size());
+            }
+        }
+        return ordered.isEmpty() ? Collections.emptyMap() : ordered;
+    }
+
+    private static void trimNewline(StringBuilder out) {
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == '\n') {
+            out.setLength(length - 1);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - QuickML LLM client
+ * Zoho Catalyst QuickML chat endpoint (Qwen 2.5 14B). Requests run under
+ * an adaptive concurrency limit; 429/5xx responses and I/O errors shrink
+ * the limit and are retried after the Retry-After or a jittered backoff.
+ *
+ * Configuration (defaults are the PixelCheck project):
+ *   -Dpixelcheck.llm.endpoint=https://...   chat endpoint
+ *   -Dpixelcheck.llm.org=...                CATALYST-ORG header
+ *   -Dpixelcheck.llm.authorization=...      Authorization header
+ *   -Dpixelcheck.llm.model=...              model name
+ * plus the pixelcheck.llm.* concurrency and retry settings of
+ * AdaptiveConcurrencyLimiter and RetryPolicy.
+ */
+public class QuickMLClient implements LlmClient {
+
+    private static final String DEFAULT_ENDPOINT = "https://api.catalyst.zoho.in/quickml/v2/project/28618000000011083/llm/chat";
+    private static final String DEFAULT_ORG = "60064252849";
+    private static final String DEFAULT_AUTHORIZATION = "Zoho-oauthtoken 1000.63bd483c2152e704e65f879f82596219.03e9481f8f677d8efbb6fafc6a6417b2";
+    private static final String DEFAULT_MODEL = "crm-di-qwen_text_14b-fp8-it";
+
+    private final URI endpoint;
+    private final String org;
+    private final String authorization;
+    private final String model;
+    private final String identity;
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final RetryPolicy retry;
+
+    public QuickMLClient(String endpoint, String identity, String org, String authorization, String model,
+            AdaptiveConcurrencyLimiter limiter, RetryPolicy retry) {
+        this.endpoint = URI.create(endpoint);
+        this.identity = identity;
+        this.org = org;
+        this.authorization = authorization;
+        this.model = model;
+        this.limiter = limiter;
+        this.retry = retry;
+    }
+
+    public static QuickMLClient fromSystemProperties() {
+        return forEndpoint(System.getProperty("pixelcheck.llm.endpoint", DEFAULT_ENDPOINT));
+    }
+
+    /**
+     * Client for a QuickML-compatible endpoint with the other settings
+     * taken from system properties
+     */
+    public static QuickMLClient forEndpoint(String endpoint) {
+        return forEndpoint(endpoint, endpoint);
+    }
+
+    /**
+     * As forEndpoint(endpoint), with the cache identity given separately
+     * for endpoints whose address changes between runs
+     */
+    public static QuickMLClient forEndpoint(String endpoint, String identity) {
+        return new QuickMLClient(endpoint, identity,
+                System.getProperty("pixelcheck.llm.org", DEFAULT_ORG),
+                System.getProperty("pixelcheck.llm.authorization", DEFAULT_AUTHORIZATION),
+                System.getProperty("pixelcheck.llm.model", DEFAULT_MODEL),
+                AdaptiveConcurrencyLimiter.fromSystemProperties("QuickML", "llm"),
+                RetryPolicy.fromSystemProperties("llm"));
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    @Override
+    public String identity() {
+        return identity;
+    }
+
+    @Override
+    public Completion complete(JSONObject payload) throws Exception {
+        // Build request for the shared QuickML client
+        HttpRequest request = HttpTransport.newRequest(HttpTransport.QUICKML, endpoint)
+                .header("Content-Type", "application/json")
+                .header("Authorization", authorization)
+                .header("CATALYST-ORG", org)
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
+                .build();
+
+        // Send request under the adaptive concurrency limit; 429/5xx and
+        // timeouts shrink the limit and are retried after a backoff
+        HttpResponse<String> response = null;
+        for (int attempt = 0;; attempt++) {
+            long start = limiter.acquire();
+            PipelineMetrics.LLM_REQUESTS.increment();
+            try {
+                response = HttpTransport.send(HttpTransport.QUICKML, request, HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                limiter.onThrottled(start);
+                if (attempt >= retry.getMaxRetries()) {
+                    throw e;
+                }
+                waitBeforeRetry("QuickML " + e.getClass().getSimpleName(), attempt + 1, null);
+                continue;
+            } catch (Exception e) {
+                // Interrupted (a cancelled sibling platform) or refused by the
+                // traffic archive: not a capacity signal, but the slot must go back
+                limiter.onIgnored(start);
+                throw e;
+            }
+
+            if (response.statusCode() == 200) {
+                limiter.onSuccess(start);
+                break;
+            }
+            if (!RetryPolicy.isRetryable(response.statusCode())) {
+                limiter.onIgnored(start);
+                throw new Exception("QuickML LLM API error (" + response.statusCode() + "): " + response.body());
+            }
+            limiter.onThrottled(start);
+            if (attempt >= retry.getMaxRetries()) {
+                throw new Exception("QuickML LLM API error (" + response.statusCode() + ") after " + (attempt + 1)
+                        + " attempts: " + response.body());
+            }
+            waitBeforeRetry("QuickML " + response.statusCode(), attempt + 1, response);
+        }
+
+        // Parse response
+        JSONObject responseJson = new JSONObject(response.body());
+
+        // Extract the actual response text
+        if (responseJson.has("response")) {
+            return new Completion(responseJson.getString("response"),
+                    responseJson.optString("finish_reason", responseJson.optString("stop_reason", null)));
+        } else if (responseJson.has("choices")) {
+            JSONObject choice = responseJson.getJSONArray("choices").getJSONObject(0);
+            return new Completion(choice.getJSONObject("message").getString("content"),
+                    choice.optString("finish_reason", null));
+        } else {
+            throw new Exception("Unexpected response format from QuickML LLM");
+        }
+    }
+
+    /**
+     * Sleeps for the retry delay of an attempt (Retry-After or backoff)
+     */
+    private void waitBeforeRetry(String reason, int attempt, HttpResponse<?> response)
+            throws InterruptedException {
+        long delay = retry.delayMillis(attempt, response);
+        PipelineMetrics.LLM_RETRIES.increment();
+        System.err.println("Warning: " + reason + ", retry " + attempt + " in " + delay + "ms");
+        Thread.sleep(delay);
+    }
+
+    @Override
+    public void prewarm() {
+        HttpTransport.prewarm(HttpTransport.QUICKML, endpoint.toString());
+    }
+
+    @Override
+    public String stats() {
+        return limiter.stats();
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Streaming result sink
+ * Writes platform analyses, mappings and run outcomes as NDJSON records the
+ * moment they are produced, so a crash keeps everything finished so far and
+ * no complete result tree has to be held for the final write.
+ *
+ * Records:
+ *   {"type": "analysis", "run": id, "platform": "android", "analysis": {...}}
+ *   {"type": "mapping",  "run": id, "mapping": {...}}
+ *   {"type": "result",   "run": id, "success": true, "timestamp": ...}
+ *
+ * Output goes through a direct ByteBuffer into a FileChannel; paths ending
+ * in .gz are gzip-compressed (sync-flushed per record so the stream stays
+ * readable up to the last complete record).
+ */
+public class ResultSink implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel file;
+    private final GZIPOutputStream gzip;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long records;
+
+    private ResultSink(Path path, boolean compress) throws IOException {
+        this.path = path;
+        this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        if (compress) {
+            gzip = new GZIPOutputStream(Channels.newOutputStream(file), BUFFER_SIZE, true);
+            channel = Channels.newChannel(gzip);
+        } else {
+            gzip = null;
+            channel = file;
+        }
+    }
+
+    /**
+     * Opens a sink at the given path, gzip-compressed when it ends in .gz
+     */
+    public static ResultSink open(Path path) throws IOException {
+        return new ResultSink(path, path.getFileName().toString().endsWith(".gz"));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public void writeAnalysis(String run, String platform, JSONObject analysis) throws IOException {
+        JSONObject record = record("analysis", run);
+        record.put("platform", platform.toLowerCase());
+        record.put("analysis", analysis);
+        write(record);
+    }
+
+    public void writeMapping(String run, JSONObject mapping) throws IOException {
+        JSONObject record = record("mapping", run);
+        record.put("mapping", mapping);
+        write(record);
+    }
+
+    public void writeSuccess(String run) throws IOException {
+        JSONObject record = record("result", run);
+        record.put("success", true);
+        record.put("timestamp", java.time.Instant.now().toString());
+        write(record);
+    }
+
+    public void writeFailure(String run, String error) throws IOException {
+        JSONObject record = record("result", run);
+        record.put("success", false);
+        record.put("error", error == null ? "Unknown error" : error);
+        record.put("timestamp", java.time.Instant.now().toString());
+        write(record);
+    }
+
+    private static JSONObject record(String type, String run) {
+        JSONObject record = new JSONObject();
+        record.put("type", type);
+        record.put("run", run);
+        return record;
+    }
+
+    /**
+     * Appends one record and hands it to the OS before returning
+     */
+    public synchronized void write(JSONObject record) throws IOException {
+        byte[] line = (record.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        int offset = 0;
+        while (offset < line.length) {
+            int length = Math.min(buffer.remaining(), line.length - offset);
+            buffer.put(line, offset, length);
+            offset += length;
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+        }
+        drain();
+        if (gzip != null) {
+            gzip.flush();
+        }
+        records++;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            drain();
+            if (gzip != null) {
+                gzip.finish();
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Streams the records of a sink file one at a time; gzip is detected
+     * from the file's magic bytes. A torn trailing line (crash mid-write)
+     * is ignored.
+     */
+    public static void forEach(Path path, Consumer<JSONObject> action) throws IOException {
+        try (InputStream in = decompressIfGzip(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JSONObject record;
+                try {
+                    record = new JSONObject(line);
+                } catch (Exception e) {
+                    if (!reader.ready()) {
+                        break; // torn last record
+                    }
+                    throw new IOException("Invalid result record in " + path + ": " + e.getMessage());
+                }
+                action.accept(record);
+            }
+        }
+    }
+
+    private static InputStream decompressIfGzip(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >>> 8)) {
+            // A gzip stream cut short by a crash ends at its last sync-flushed record
+            return new GZIPInputStream(in, BUFFER_SIZE) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    try {
+                        return super.read(b, off, len);
+                    } catch (EOFException e) {
+                        return -1;
+                    }
+                }
+            };
+        }
+        return in;
+    }
+
+    /**
+     * Output path from -Dpixelcheck.results.file, with .gz appended when
+     * -Dpixelcheck.results.gzip=true
+     */
+    static Path outputPath(String defaultName) {
+        String name = System.getProperty("pixelcheck.results.file", defaultName);
+        if (Boolean.getBoolean("pixelcheck.results.gzip") && !name.endsWith(".gz")) {
+            name += ".gz";
+        }
+        return Path.of(name);
+    }
+}
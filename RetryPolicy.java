@@ -0,0 +1,85 @@
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * PixelCheck - Retry policy for rate-limited backends
+ * Decides which responses are worth retrying (429, 5xx) and how long to
+ * wait: the server's Retry-After when it sends one, otherwise exponential
+ * backoff randomized over its upper half so throttled callers do not retry
+ * in lockstep.
+ */
+public class RetryPolicy {
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Creates a policy configured through pixelcheck.&lt;prefix&gt;.maxRetries,
+     * retryBaseDelayMillis and retryMaxDelayMillis
+     */
+    public static RetryPolicy fromSystemProperties(String prefix) {
+        String base = "pixelcheck." + prefix + ".";
+        return new RetryPolicy(
+                Integer.getInteger(base + "maxRetries", 4),
+                Long.getLong(base + "retryBaseDelayMillis", 500),
+                Long.getLong(base + "retryMaxDelayMillis", 30_000));
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * True for responses that signal overload rather than a bad request
+     */
+    public static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode == 500 || statusCode == 502 || statusCode == 503
+                || statusCode == 504;
+    }
+
+    /**
+     * Milliseconds to wait before retry number attempt (1-based): the
+     * response's Retry-After if present, else jittered exponential backoff
+     */
+    public long delayMillis(int attempt, HttpResponse<?> response) {
+        long retryAfter = response == null ? -1 : retryAfterMillis(response);
+        if (retryAfter >= 0) {
+            return Math.min(retryAfter, maxDelayMillis);
+        }
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    /**
+     * Parses Retry-After as delta-seconds or an HTTP date; -1 when absent
+     * or unparseable
+     */
+    public static long retryAfterMillis(HttpResponse<?> response) {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, (long) (Double.parseDouble(value) * 1000));
+        } catch (NumberFormatException e) {
+            // Not delta-seconds; try the HTTP-date form
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PixelCheck - Single-flight request coalescing
+ * Concurrent calls with the same key share one in-flight execution and its
+ * result (or failure) instead of each sending a duplicate request. The key
+ * is forgotten as soon as the execution finishes, so later calls run again
+ * (and typically hit a cache).
+ *
+ * A leader cancelled by its own caller (interrupted when a sibling task
+ * fails or a job is torn down) does not fail the callers waiting on it:
+ * they run the call again themselves.
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Runs the loader for a key, or waits for the execution already in
+     * flight for the same key and returns its result
+     */
+    public V execute(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (isCancellation(cause) && !Thread.currentThread().isInterrupted()) {
+                    return execute(key, loader);
+                }
+                throw cause instanceof Exception ? (Exception) cause : new Exception(cause);
+            }
+        }
+
+        executions.incrementAndGet();
+        try {
+            V value = loader.call();
+            created.complete(value);
+            return value;
+        } catch (Exception e) {
+            created.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * True when a failure (or any of its causes) comes from the thread
+     * being interrupted or cancelled rather than from the call itself
+     */
+    static boolean isCancellation(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            // SocketTimeoutException is an InterruptedIOException but a real failure
+            if (cause instanceof InterruptedException
+                    || cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)
+                    || cause instanceof ClosedByInterruptException || cause instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * One-line summary of executed and coalesced calls
+     */
+    public String stats() {
+        return String.format("%s: %d executed, %d coalesced", name, executions.get(), coalesced.get());
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Structural subtree memo
+ * Gives every node a Merkle-style structural hash (type, name, text and the
+ * hashes of its children; never ids or positions) in one bottom-up pass.
+ * INSTANCE nodes hash by their main component and visible text instead of
+ * their expanded children, so all copies of a component instance collapse
+ * to one structure. Components with the same structure are sent to the LLM
+ * once, and the classification is memoized per structure for later chunks,
+ * frames and runs in this process.
+ *
+ * Configuration:
+ *   -Dpixelcheck.structureMemo.enabled=false      analyze every component separately
+ *   -Dpixelcheck.structureMemo.maxEntries=10000   memoized structures kept in memory
+ */
+public class StructureMemo {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<String, JSONObject> results;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public StructureMemo(int maxEntries) {
+        this.results = new LinkedHashMap<String, JSONObject>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JSONObject> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Creates the memo configured through system properties, or returns
+     * null when it is disabled
+     */
+    public static StructureMemo fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("pixelcheck.structureMemo.enabled", "true"))) {
+            return null;
+        }
+        return new StructureMemo(Integer.getInteger("pixelcheck.structureMemo.maxEntries", 10000));
+    }
+
+    /**
+     * Pending node of the bottom-up pass with its children's combined hashes
+     */
+    private static final class Visit {
+        final FigmaNode node;
+        int nextChild;
+        long children = FNV_OFFSET;
+        long text = FNV_OFFSET;
+
+        Visit(FigmaNode node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * Sets structureHash on every node of the tree, children before parents
+     */
+    public static void hashTree(FigmaNode root) {
+        ArrayDeque<Visit> stack = new ArrayDeque<>();
+        stack.push(new Visit(root));
+        while (!stack.isEmpty()) {
+            Visit visit = stack.peek();
+            FigmaNode node = visit.node;
+            if (visit.nextChild < node.children.size()) {
+                stack.push(new Visit(node.children.get(visit.nextChild++)));
+                continue;
+            }
+            stack.pop();
+
+            // Visible text of the subtree, the part of an instance that overrides may change
+            long text = visit.text;
+            if (node.characters != null) {
+                text = combine(text, hash(node.characters));
+            }
+            if (!node.visible) {
+                text = FNV_OFFSET;
+            }
+
+            long structure = combine(hash(node.type), node.visible ? 1 : 0);
+            if ("INSTANCE".equals(node.type) && node.componentId != null) {
+                structure = combine(combine(combine(structure, hash(node.componentId)), hash(node.name)), text);
+            } else {
+                structure = combine(combine(combine(structure, hash(node.name)), hash(node.characters)),
+                        visit.children);
+            }
+            node.structureHash = structure;
+
+            Visit parent = stack.peek();
+            if (parent != null) {
+                parent.children = combine(parent.children, structure);
+                parent.text = combine(parent.text, text);
+            }
+        }
+    }
+
+    /**
+     * Memoized classification of a structure on a platform, or null
+     */
+    public JSONObject get(String platform, long structureHash) {
+        JSONObject result;
+        synchronized (results) {
+            result = results.get(key(platform, structureHash));
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    public void put(String platform, long structureHash, JSONObject result) {
+        synchronized (results) {
+            results.put(key(platform, structureHash), result);
+        }
+    }
+
+    private static String key(String platform, long structureHash) {
+        return platform + ':' + Long.toHexString(structureHash);
+    }
+
+    public String stats() {
+        return String.format("Structure memo: %d structures reused, %d analyzed", hits.get(), misses.get());
+    }
+
+    private static long hash(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long h = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * Order-sensitive combination with a splitmix64 finalizer
+     */
+    private static long combine(long h, long value) {
+        long z = Long.rotateLeft(h, 7) ^ value;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,397 @@
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Synthetic Figma documents
+ * Generates GET /v1/files/{key} responses shaped like real design files for
+ * scale tests and benchmarks: pages of screens, nested sections, text,
+ * vector decoration and UI controls that are either reused instances of a
+ * shared component library or one-off variants. The same seed gives the
+ * same layout on every platform, with each control named and built the way
+ * that platform would (an Android search bar is an iOS search icon and a
+ * Web search input), so generated triples exercise the cross-platform
+ * mapping as well as parsing and extraction.
+ *
+ * Specs are a preset name and/or comma-separated key=value settings, e.g.
+ * "medium", "million,platform=ios" or "pages=2,frames=10,reuse=0.9":
+ *   pages, frames      pages and screens per page
+ *   elements           leaf elements (text, control, vector) per screen
+ *   depth, branching   nesting of sections inside a screen
+ *   reuse              share of controls that are identical library instances (0-1)
+ *   text               share of elements that are text layers (0-1)
+ *   platform           android, ios or web
+ *   seed               random seed
+ */
+public class SyntheticFigmaFile {
+
+    public static final String[] PLATFORMS = { "android", "ios", "web" };
+
+    /**
+     * One control purpose as drawn on Android, iOS and Web: layer name and
+     * visible text (null for icon-only controls)
+     */
+    private static final String[][] CONTROLS = {
+            { "Search Bar", "Search flights…", "Search Icon", null, "Search Input", "Search" },
+            { "Book Ticket Button", "Book ticket", "Book Ticket Button", "Book", "Submit Button", "Book now" },
+            { "Date Picker", "Select date", "Date Selector", "Today", "Date Input", "mm/dd/yyyy" },
+            { "Email Input", "Email", "Email Field", "Email", "Email Input", "you@example.com" },
+            { "Filter Chip", "Filters", "Filter Segmented Control", "All", "Filter Dropdown", "Filter by" },
+            { "Navigation Drawer Icon", null, "Tab Bar", "Home", "Hamburger Menu", null },
+            { "Profile Avatar", null, "Profile Avatar", null, "Account Menu", "Account" },
+            { "Checkbox", "Remember me", "Toggle Switch", "Remember me", "Checkbox", "Remember me" },
+            { "Back Arrow", null, "Back Button", "Back", "Breadcrumb", "Home" },
+            { "Password Input", "Password", "Secure Text Field", "Password", "Password Input", "Password" },
+    };
+
+    private static final String[] SCREENS = {
+            "Home", "Search", "Results", "Flight Details", "Seat Selection", "Checkout", "Confirmation",
+            "Profile", "Settings", "Login", "Sign Up", "Bookings"
+    };
+
+    private static final String[] WORDS = {
+            "Flight", "departs", "at", "gate", "boarding", "your", "trip", "to", "London", "Paris", "Tokyo",
+            "price", "total", "seat", "window", "aisle", "baggage", "included", "economy", "business", "today"
+    };
+
+    /**
+     * Generation settings
+     */
+    public static class Spec {
+        int pages = 4;
+        int frames = 25;
+        int elements = 90;
+        int depth = 2;
+        int branching = 3;
+        double reuse = 0.6;
+        double text = 0.3;
+        String platform = "android";
+        long seed = 42;
+
+        /**
+         * Parses "preset", "preset,key=value,..." or "key=value,..."
+         */
+        public static Spec parse(String spec) {
+            Spec result = new Spec();
+            for (String part : spec.split(",")) {
+                part = part.trim();
+                if (part.isEmpty()) {
+                    continue;
+                }
+                int eq = part.indexOf('=');
+                if (eq < 0) {
+                    result.preset(part);
+                    continue;
+                }
+                String value = part.substring(eq + 1).trim();
+                switch (part.substring(0, eq).trim()) {
+                    case "pages":
+                        result.pages = Integer.parseInt(value);
+                        break;
+                    case "frames":
+                        result.frames = Integer.parseInt(value);
+                        break;
+                    case "elements":
+                        result.elements = Integer.parseInt(value);
+                        break;
+                    case "depth":
+                        result.depth = Integer.parseInt(value);
+                        break;
+                    case "branching":
+                        result.branching = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "reuse":
+                        result.reuse = Double.parseDouble(value);
+                        break;
+                    case "text":
+                        result.text = Double.parseDouble(value);
+                        break;
+                    case "platform":
+                        result.platform = value.toLowerCase();
+                        break;
+                    case "seed":
+                        result.seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown synthetic file setting: " + part);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * small: 1 page of 5 screens; medium: 100 screens; huge: 1,000
+         * screens; designSystem: 500 screens of heavily reused library
+         * components; million: about a million nodes
+         */
+        private void preset(String name) {
+            switch (name) {
+                case "small":
+                    set(1, 5, 25, 1);
+                    break;
+                case "medium":
+                    set(4, 25, 90, 2);
+                    break;
+                case "huge":
+                    set(20, 50, 240, 3);
+                    break;
+                case "designSystem":
+                    set(10, 50, 120, 3);
+                    reuse = 0.9;
+                    break;
+                case "million":
+                    set(20, 50, 600, 3);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown synthetic file preset: " + name);
+            }
+        }
+
+        private void set(int pages, int frames, int elements, int depth) {
+            this.pages = pages;
+            this.frames = frames;
+            this.elements = elements;
+            this.depth = depth;
+        }
+
+        public Spec withPlatform(String platform) {
+            Spec copy = parse(toString());
+            copy.platform = platform;
+            return copy;
+        }
+
+        @Override
+        public String toString() {
+            return "pages=" + pages + ",frames=" + frames + ",elements=" + elements + ",depth=" + depth
+                    + ",branching=" + branching + ",reuse=" + reuse + ",text=" + text + ",platform=" + platform
+                    + ",seed=" + seed;
+        }
+    }
+
+    private final Spec spec;
+    private final int column;
+    private final Random random;
+    private final StringBuilder json;
+    private int nextId = 1;
+
+    private SyntheticFigmaFile(Spec spec, StringBuilder json) {
+        this.spec = spec;
+        int platform = Arrays.asList(PLATFORMS).indexOf(spec.platform);
+        if (platform < 0) {
+            throw new IllegalArgumentException("Unknown platform: " + spec.platform);
+        }
+        this.column = platform * 2;
+        this.random = new Random(spec.seed);
+        this.json = json;
+    }
+
+    public static String generate(String spec) {
+        return generate(Spec.parse(spec));
+    }
+
+    public static String generate(Spec spec) {
+        StringBuilder json = new StringBuilder(1 << 20);
+        generate(spec, json);
+        return json.toString();
+    }
+
+    /**
+     * Appends the file JSON to a buffer
+     */
+    public static void generate(Spec spec, StringBuilder json) {
+        new SyntheticFigmaFile(spec, json).file();
+    }
+
+    /**
+     * File version reported for a spec; changes whenever the content would
+     */
+    public static String version(Spec spec) {
+        return Long.toHexString(spec.toString().hashCode() & 0xffffffffL);
+    }
+
+    private void file() {
+        json.append("{\"name\":\"Synthetic ").append(spec.platform).append("\",\"version\":\"")
+                .append(version(spec))
+                .append("\",\"lastModified\":\"2024-01-01T00:00:00Z\",\"document\":{\"id\":\"0:0\",")
+                .append("\"name\":\"Document\",\"type\":\"DOCUMENT\",\"children\":[");
+        for (int p = 0; p < spec.pages; p++) {
+            if (p > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(p).append(":0\",\"name\":\"Page ").append(p + 1)
+                    .append("\",\"type\":\"CANVAS\",\"children\":[");
+            for (int f = 0; f < spec.frames; f++) {
+                if (f > 0) {
+                    json.append(',');
+                }
+                screen(p, f);
+            }
+            json.append("]}");
+        }
+        json.append("]},\"components\":{");
+        for (int c = 0; c < CONTROLS.length; c++) {
+            if (c > 0) {
+                json.append(',');
+            }
+            json.append("\"c:").append(c).append("\":{\"key\":\"").append(Integer.toHexString(c * 7919 + 4096))
+                    .append("\",\"name\":").append(JSONObject.quote(CONTROLS[c][column])).append(",\"description\":\"\"}");
+        }
+        json.append("},\"styles\":{},\"schemaVersion\":0}");
+    }
+
+    private void screen(int page, int index) {
+        String name = SCREENS[(page * spec.frames + index) % SCREENS.length];
+        if (page * spec.frames + index >= SCREENS.length) {
+            name += " " + ((page * spec.frames + index) / SCREENS.length + 1);
+        }
+        json.append("{\"id\":\"").append(page).append(':').append(nextId++).append("\",\"name\":")
+                .append(JSONObject.quote(name)).append(",\"type\":\"FRAME\",");
+        bounds(0, 0, width(), height());
+        fills();
+        json.append(",\"children\":[");
+        section(page, spec.elements, 0);
+        json.append("]}");
+    }
+
+    /**
+     * Appends elements, nesting part of them in sub-sections down to the
+     * configured depth
+     */
+    private void section(int page, int elements, int level) {
+        int sections = level < spec.depth ? Math.min(spec.branching, elements) : 0;
+        int perSection = sections == 0 ? 0 : elements / (sections + 1);
+        int own = elements - perSection * sections;
+        boolean first = true;
+        for (int i = 0; i < own; i++) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            element(page);
+        }
+        for (int s = 0; s < sections; s++) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"id\":\"").append(page).append(':').append(nextId++).append("\",\"name\":\"Section ")
+                    .append(s + 1).append("\",\"type\":\"").append(s % 2 == 0 ? "FRAME" : "GROUP").append("\",");
+            bounds(0, random.nextInt(height()), width(), 120);
+            json.append(",\"children\":[");
+            section(page, perSection, level + 1);
+            json.append("]}");
+        }
+    }
+
+    private void element(int page) {
+        String id = page + ":" + nextId++;
+        double kind = random.nextDouble();
+        int x = random.nextInt(width());
+        int y = random.nextInt(height());
+        if (kind < spec.text) {
+            text(id, "Label", sentence(), x, y);
+        } else if (kind < spec.text + (1 - spec.text) * 0.5) {
+            control(id, random.nextInt(CONTROLS.length), random.nextDouble() < spec.reuse, x, y);
+        } else {
+            json.append("{\"id\":\"").append(id).append("\",\"name\":\"Vector\",\"type\":\"VECTOR\",");
+            bounds(x, y, 24, 24);
+            fills();
+            json.append(",\"fillGeometry\":[{\"path\":\"M0 0L24 0L24 24L0 24Z\",\"windingRule\":\"NONZERO\"}],")
+                    .append("\"effects\":[{\"type\":\"DROP_SHADOW\",\"radius\":4,\"visible\":true}]}");
+        }
+    }
+
+    /**
+     * A control instance: a library instance identical to every other use,
+     * or a one-off variant with its own component and text override
+     */
+    private void control(String id, int control, boolean reused, int x, int y) {
+        String name = CONTROLS[control][column];
+        String text = CONTROLS[control][column + 1];
+        String componentId = "c:" + control;
+        int variant = random.nextInt(1000);
+        if (!reused) {
+            componentId += ":" + variant;
+            if (text != null) {
+                text += " " + variant;
+            }
+        }
+        json.append("{\"id\":\"").append(id).append("\",\"name\":").append(JSONObject.quote(name))
+                .append(",\"type\":\"INSTANCE\",\"componentId\":\"").append(componentId).append("\",");
+        bounds(x, y, text == null ? 24 : 200, text == null ? 24 : 48);
+        fills();
+        json.append(",\"children\":[{\"id\":\"I").append(id).append(";1\",\"name\":\"Background\",")
+                .append("\"type\":\"RECTANGLE\",");
+        bounds(x, y, text == null ? 24 : 200, text == null ? 24 : 48);
+        fills();
+        json.append("},");
+        if (text != null) {
+            text("I" + id + ";2", "Text", text, x + 12, y + 14);
+        } else {
+            json.append("{\"id\":\"I").append(id).append(";2\",\"name\":\"Icon\",\"type\":\"VECTOR\",");
+            bounds(x, y, 24, 24);
+            json.append('}');
+        }
+        json.append("]}");
+    }
+
+    private void text(String id, String name, String characters, int x, int y) {
+        json.append("{\"id\":\"").append(id).append("\",\"name\":").append(JSONObject.quote(name))
+                .append(",\"type\":\"TEXT\",\"characters\":").append(JSONObject.quote(characters)).append(',');
+        bounds(x, y, 8 * characters.length(), 20);
+        json.append(",\"style\":{\"fontFamily\":\"Inter\",\"fontSize\":14,\"fontWeight\":400}}");
+    }
+
+    private String sentence() {
+        int words = 1 + random.nextInt(6);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private int width() {
+        return "web".equals(spec.platform) ? 1440 : 390;
+    }
+
+    private int height() {
+        return "web".equals(spec.platform) ? 900 : 844;
+    }
+
+    private void bounds(int x, int y, int width, int height) {
+        json.append("\"absoluteBoundingBox\":{\"x\":").append(x).append(",\"y\":").append(y)
+                .append(",\"width\":").append(width).append(",\"height\":").append(height).append('}');
+    }
+
+    private void fills() {
+        json.append(",\"fills\":[{\"blendMode\":\"NORMAL\",\"type\":\"SOLID\",")
+                .append("\"color\":{\"r\":0.2,\"g\":0.4,\"b\":0.8,\"a\":1}}]");
+    }
+
+    /**
+     * Writes a generated file: java SyntheticFigmaFile &lt;spec&gt; [output.json]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java SyntheticFigmaFile <spec> [output.json]");
+            System.out.println("  spec: preset (small, medium, huge, designSystem, million) and/or key=value settings,");
+            System.out.println("        e.g. million,platform=ios or pages=2,frames=10,reuse=0.9,text=0.5");
+            return;
+        }
+        Spec spec = Spec.parse(args[0]);
+        String json = generate(spec);
+        if (args.length > 1) {
+            Files.writeString(Paths.get(args[1]), json, StandardCharsets.UTF_8);
+            System.out.println("✓ Wrote " + (json.length() >> 10) + " KB (" + spec + ") to " + args[1]);
+        } else {
+            System.out.println(json);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLSession;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Traffic record/replay
+ * Records every Figma and QuickML exchange that goes through HttpTransport
+ * (request, response status/headers/body, timing) into an NDJSON archive,
+ * gzip-compressed when the file ends in .gz, with identical response
+ * bodies stored once. Replay serves those exchanges in-process instead of
+ * the network, delayed by their recorded durations (optionally scaled),
+ * so a slow or flaky production run, or a night's batch, can be re-run
+ * offline and compared build against build.
+ *
+ * Exchanges are matched by endpoint, method, path and query, and a hash of
+ * the request body. Repeated identical requests (retries after a 429) get
+ * the recorded responses in order; the last one is reused once they run
+ * out. Record and replay with the same cache settings (ideally disabled),
+ * so the replayed run issues the same requests.
+ *
+ * Configuration:
+ *   -Dpixelcheck.traffic.record=FILE      record to FILE (.ndjson or .ndjson.gz)
+ *   -Dpixelcheck.traffic.replay=FILE      replay from FILE; unrecorded requests fail
+ *   -Dpixelcheck.traffic.timeScale=1.0    replay delay factor (0 = no delays)
+ */
+public class TrafficArchive {
+
+    // Response headers worth keeping: Retry-After drives the retry policies
+    private static final List<String> RECORDED_HEADERS = List.of("Content-Type", "Retry-After");
+
+    private final ResultSink recording;
+    private final Set<String> recordedBodies = ConcurrentHashMap.newKeySet();
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, ArrayDeque<JSONObject>> replay;
+    private final Map<String, String> replayBodies;
+    private final double timeScale;
+
+    private final Path path;
+    private final AtomicLong exchanges = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+
+    private TrafficArchive(Path path, ResultSink recording, Map<String, ArrayDeque<JSONObject>> replay,
+            Map<String, String> replayBodies, double timeScale) {
+        this.path = path;
+        this.recording = recording;
+        this.replay = replay;
+        this.replayBodies = replayBodies;
+        this.timeScale = timeScale;
+    }
+
+    /**
+     * Starts recording to a new archive
+     */
+    public static TrafficArchive record(Path path) throws IOException {
+        ResultSink sink = ResultSink.open(path);
+        TrafficArchive archive = new TrafficArchive(path, sink, null, null, 1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                System.err.println("Warning: could not close traffic archive " + path + ": " + e.getMessage());
+            }
+        }));
+        return archive;
+    }
+
+    /**
+     * Loads an archive for replay
+     */
+    public static TrafficArchive replay(Path path, double timeScale) throws IOException {
+        Map<String, ArrayDeque<JSONObject>> exchanges = new HashMap<>();
+        Map<String, String> bodies = new HashMap<>();
+        ResultSink.forEach(path, record -> {
+            if ("body".equals(record.optString("type"))) {
+                bodies.put(record.getString("hash"), record.getString("text"));
+            } else if ("exchange".equals(record.optString("type"))) {
+                exchanges.computeIfAbsent(record.getString("key"), k -> new ArrayDeque<>()).add(record);
+            }
+        });
+        System.out.println("✓ Replaying " + exchanges.values().stream().mapToInt(ArrayDeque::size).sum()
+                + " recorded exchanges from " + path + " (time scale " + timeScale + ")");
+        return new TrafficArchive(path, null, exchanges, bodies, timeScale);
+    }
+
+    /**
+     * Creates the archive selected by pixelcheck.traffic.record or
+     * pixelcheck.traffic.replay, or returns null when neither is set
+     */
+    public static TrafficArchive fromSystemProperties() {
+        String record = System.getProperty("pixelcheck.traffic.record");
+        String replay = System.getProperty("pixelcheck.traffic.replay");
+        try {
+            if (replay != null) {
+                return replay(Paths.get(replay),
+                        Double.parseDouble(System.getProperty("pixelcheck.traffic.timeScale", "1.0")));
+            }
+            if (record != null) {
+                return record(Paths.get(record));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open traffic archive: " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Sends a request through the client while recording it, or answers it
+     * from the archive when replaying
+     */
+    public <T> HttpResponse<T> send(String endpoint, HttpClient client, HttpRequest request,
+            HttpResponse.BodyHandler<T> bodyHandler) throws Exception {
+        String key = key(endpoint, request);
+        return replay != null ? replay(key, request, bodyHandler) : record(key, client, request, bodyHandler);
+    }
+
+    private <T> HttpResponse<T> record(String key, HttpClient client, HttpRequest request,
+            HttpResponse.BodyHandler<T> bodyHandler) throws Exception {
+        JSONObject exchange = new JSONObject();
+        exchange.put("type", "exchange");
+        exchange.put("key", key);
+        long start = System.nanoTime();
+        exchange.put("startMillis", (start - startNanos) / 1_000_000);
+
+        // The body is buffered whole so it can be stored, then handed to the caller's handler
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            exchange.put("durationMillis", (System.nanoTime() - start) / 1_000_000);
+            exchange.put("error", e.getClass().getSimpleName() + ": " + e.getMessage());
+            recording.write(exchange);
+            exchanges.incrementAndGet();
+            throw e;
+        }
+        exchange.put("durationMillis", (System.nanoTime() - start) / 1_000_000);
+
+        String text = new String(response.body(), StandardCharsets.UTF_8);
+        String hash = FigmaFileCache.sha256(text);
+        if (recordedBodies.add(hash)) {
+            JSONObject body = new JSONObject();
+            body.put("type", "body");
+            body.put("hash", hash);
+            body.put("text", text);
+            recording.write(body);
+        }
+
+        exchange.put("status", response.statusCode());
+        JSONObject headers = new JSONObject();
+        for (String name : RECORDED_HEADERS) {
+            response.headers().firstValue(name).ifPresent(value -> headers.put(name, value));
+        }
+        exchange.put("headers", headers);
+        exchange.put("body", hash);
+        recording.write(exchange);
+        exchanges.incrementAndGet();
+
+        return toResponse(request, response.statusCode(), response.headers(), response.body(), bodyHandler);
+    }
+
+    private <T> HttpResponse<T> replay(String key, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws Exception {
+        JSONObject exchange;
+        ArrayDeque<JSONObject> recorded = replay.get(key);
+        if (recorded == null) {
+            missing.incrementAndGet();
+            throw new Exception("No recorded exchange for " + key.replace('\n', ' '));
+        }
+        synchronized (recorded) {
+            exchange = recorded.size() > 1 ? recorded.poll() : recorded.peek();
+        }
+        exchanges.incrementAndGet();
+
+        long delay = (long) (exchange.optLong("durationMillis") * timeScale);
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        if (exchange.has("error")) {
+            throw new IOException("Replayed " + exchange.getString("error"));
+        }
+
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        JSONObject recordedHeaders = exchange.optJSONObject("headers");
+        if (recordedHeaders != null) {
+            for (String name : recordedHeaders.keySet()) {
+                headers.put(name, List.of(recordedHeaders.getString(name)));
+            }
+        }
+        String body = replayBodies.getOrDefault(exchange.optString("body"), "");
+        return toResponse(request, exchange.getInt("status"), HttpHeaders.of(headers, (name, value) -> true),
+                body.getBytes(StandardCharsets.UTF_8), bodyHandler);
+    }
+
+    /**
+     * Endpoint, method, path and query (the host may differ between
+     * record and replay) and the request body's hash
+     */
+    static String key(String endpoint, HttpRequest request) throws Exception {
+        URI uri = request.uri();
+        String pathAndQuery = uri.getRawPath() + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+        return endpoint + "\n" + request.method() + "\n" + pathAndQuery + "\n"
+                + FigmaFileCache.sha256(new String(requestBody(request), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Collects a request's body from its publisher
+     */
+    private static byte[] requestBody(HttpRequest request) throws Exception {
+        Optional<HttpRequest.BodyPublisher> publisher = request.bodyPublisher();
+        if (publisher.isEmpty() || publisher.get().contentLength() == 0) {
+            return new byte[0];
+        }
+        CompletableFuture<byte[]> body = new CompletableFuture<>();
+        publisher.get().subscribe(new Flow.Subscriber<ByteBuffer>() {
+            private final List<byte[]> parts = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] part = new byte[item.remaining()];
+                item.get(part);
+                parts.add(part);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                body.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                int length = 0;
+                for (byte[] part : parts) {
+                    length += part.length;
+                }
+                byte[] all = new byte[length];
+                int offset = 0;
+                for (byte[] part : parts) {
+                    System.arraycopy(part, 0, all, offset, part.length);
+                    offset += part.length;
+                }
+                body.complete(all);
+            }
+        });
+        return body.get();
+    }
+
+    /**
+     * Runs buffered response bytes through the caller's body handler
+     */
+    private static <T> HttpResponse<T> toResponse(HttpRequest request, int status, HttpHeaders headers,
+            byte[] body, HttpResponse.BodyHandler<T> bodyHandler) throws Exception {
+        HttpResponse.BodySubscriber<T> subscriber = bodyHandler.apply(new HttpResponse.ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return status;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        });
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onNext(List.of(ByteBuffer.wrap(body)));
+        subscriber.onComplete();
+        T value = subscriber.getBody().toCompletableFuture().get();
+
+        return new HttpResponse<T>() {
+            @Override
+            public int statusCode() {
+                return status;
+            }
+
+            @Override
+            public HttpRequest request() {
+                return request;
+            }
+
+            @Override
+            public Optional<HttpResponse<T>> previousResponse() {
+                return Optional.empty();
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return headers;
+            }
+
+            @Override
+            public T body() {
+                return value;
+            }
+
+            @Override
+            public Optional<SSLSession> sslSession() {
+                return Optional.empty();
+            }
+
+            @Override
+            public URI uri() {
+                return request.uri();
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+
+    public boolean isReplaying() {
+        return replay != null;
+    }
+
+    public String stats() {
+        if (replay != null) {
+            return String.format("Traffic replay: %d exchanges served, %d not in %s", exchanges.get(),
+                    missing.get(), path);
+        }
+        return String.format("Traffic recording: %d exchanges, %d distinct bodies in %s", exchanges.get(),
+                recordedBodies.size(), path);
+    }
+}
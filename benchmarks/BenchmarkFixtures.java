@@ -0,0 +1,65 @@
+/**
+ * PixelCheck - Benchmark fixtures
+ * Builds synthetic Figma file JSON (via SyntheticFigmaFile) and canned LLM
+ * responses locally so the benchmarks never touch the Figma or QuickML APIs.
+ */
+public class BenchmarkFixtures {
+
+    private static final String[] CONTROL_NAMES = {
+            "Search Bar", "Book Ticket Button", "Date Picker", "Email Input", "Filter Chip", "Menu Icon",
+            "Profile Avatar", "Submit Button", "Checkbox", "Tab Bar"
+    };
+
+    /**
+     * Synthetic GET /v1/files/{key} response for a SyntheticFigmaFile spec:
+     * a preset (small, medium, huge, designSystem, million) optionally
+     * followed by settings, e.g. "medium,reuse=0.9,platform=ios"
+     */
+    public static String figmaFile(String size) {
+        return SyntheticFigmaFile.generate(size);
+    }
+
+    /**
+     * Canned analysis response with prose around a fenced JSON block
+     */
+    public static String analysisResponse(String platform, int components) {
+        StringBuilder text = new StringBuilder("Here is the analysis of the ").append(platform)
+                .append(" design:\n\n```json\n");
+        text.append("{\"platform\":\"").append(platform).append("\",\"components\":[");
+        for (int i = 0; i < components; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            String name = CONTROL_NAMES[i % CONTROL_NAMES.length];
+            text.append("{\"id\":\"1:").append(i).append("\",\"type\":\"")
+                    .append(name.toLowerCase().replace(' ', '_')).append("\",\"name\":\"").append(name)
+                    .append("\",\"purpose\":\"does something\",\"text\":\"").append(name)
+                    .append("\",\"properties\":{}}");
+        }
+        text.append("]}\n```\n\nLet me know if you need anything else.");
+        return text.toString();
+    }
+
+    /**
+     * Canned mapping response for the given number of mappings
+     */
+    public static String mappingResponse(int mappings) {
+        StringBuilder text = new StringBuilder("{\"mappings\":[");
+        for (int i = 0; i < mappings; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            String name = CONTROL_NAMES[i % CONTROL_NAMES.length];
+            text.append("{\"purpose\":\"").append(name.toLowerCase().replace(' ', '_')).append("\",");
+            for (String platform : new String[] { "android", "ios", "web" }) {
+                text.append('"').append(platform).append("\":{\"id\":\"1:").append(i).append("\",\"type\":\"button\",")
+                        .append("\"name\":\"").append(name).append("\",\"implementation\":\"native\"},");
+            }
+            text.append("\"consistency\":\"equivalent\",\"notes\":\"Same purpose\"}");
+        }
+        text.append("],\"summary\":{\"total_mappings\":").append(mappings)
+                .append(",\"consistent_components\":").append(mappings)
+                .append(",\"missing_on_platforms\":[],\"inconsistencies\":[]}}");
+        return text.toString();
+    }
+}
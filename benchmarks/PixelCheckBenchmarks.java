@@ -0,0 +1,128 @@
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PixelCheck - JMH benchmarks
+ * Measures the CPU-side costs of PixelCheckComponentMapper on local
+ * fixtures: Figma JSON parsing, component extraction, prompt construction,
+ * JSON extraction from LLM responses, local matching and printResults.
+ *
+ * Build and run from the repository root (jmh-core, jmh-generator-annprocess
+ * and org.json on the classpath; the annotation processor generates the
+ * harness at compile time):
+ *
+ *   javac -cp "lib/*" -d build *.java benchmarks/*.java
+ *   java -cp "build:lib/*" org.openjdk.jmh.Main PixelCheckBenchmarks -prof gc
+ *
+ * size takes any SyntheticFigmaFile spec, e.g. -p size=designSystem,million
+ * or -p size=huge,reuse=0.2 (commas inside one value need separate -p runs).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Dpixelcheck.cache.enabled=false",
+        "-Dpixelcheck.llmCache.enabled=false", "-Dpixelcheck.frameCache.enabled=false",
+        "-Dpixelcheck.structureMemo.enabled=false" })
+public class PixelCheckBenchmarks {
+
+    @Param({ "small", "medium", "huge" })
+    public String size;
+
+    private byte[] figmaBytes;
+    private String figmaText;
+    private FigmaNode document;
+    private JSONObject inventoryJson;
+    private JSONObject androidAnalysis;
+    private JSONObject iosAnalysis;
+    private JSONObject webAnalysis;
+    private String analysisResponse;
+    private JSONObject results;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() throws Exception {
+        figmaText = BenchmarkFixtures.figmaFile(size);
+        figmaBytes = figmaText.getBytes(StandardCharsets.UTF_8);
+        document = FigmaStreamingParser.parseFile(new ByteArrayInputStream(figmaBytes));
+        inventoryJson = FigmaComponentExtractor.extract(document).toJSON("Android");
+
+        int components = Math.min(FigmaComponentExtractor.extract(document).getComponents().size(), 400);
+        analysisResponse = BenchmarkFixtures.analysisResponse("Android", components);
+        androidAnalysis = PixelCheckComponentMapper.extractJsonResponse(analysisResponse);
+        iosAnalysis = PixelCheckComponentMapper.extractJsonResponse(
+                BenchmarkFixtures.analysisResponse("iOS", components));
+        webAnalysis = PixelCheckComponentMapper.extractJsonResponse(
+                BenchmarkFixtures.analysisResponse("Web", components));
+
+        results = new JSONObject();
+        results.put("success", true);
+        results.put("mapping", new JSONObject(BenchmarkFixtures.mappingResponse(Math.max(components / 3, 1))));
+
+        // printResults writes to System.out; keep the console out of the measurement
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public JSONObject parseJsonObject() {
+        return new JSONObject(figmaText);
+    }
+
+    @Benchmark
+    public FigmaNode parseStreaming() throws Exception {
+        return FigmaStreamingParser.parseFile(new ByteArrayInputStream(figmaBytes));
+    }
+
+    @Benchmark
+    public FigmaComponentExtractor.Inventory extractInventory() {
+        return FigmaComponentExtractor.extract(document);
+    }
+
+    @Benchmark
+    public String buildAnalysisPrompt() {
+        return PixelCheckComponentMapper.buildAnalysisPrompt(inventoryJson, "Android");
+    }
+
+    @Benchmark
+    public String buildMappingPrompt() {
+        return PixelCheckComponentMapper.buildMappingPrompt(androidAnalysis, iosAnalysis, webAnalysis);
+    }
+
+    @Benchmark
+    public JSONObject extractJsonResponse() {
+        return PixelCheckComponentMapper.extractJsonResponse(analysisResponse);
+    }
+
+    @Benchmark
+    public ComponentMatcher.Result matchLocally() {
+        return ComponentMatcher.fromSystemProperties().match(androidAnalysis, iosAnalysis, webAnalysis);
+    }
+
+    @Benchmark
+    public void printResults() {
+        PixelCheckComponentMapper.printResults(results);
+    }
+}
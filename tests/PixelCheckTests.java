@@ -0,0 +1,204 @@
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * PixelCheck - Regression tests
+ * Plain-Java checks for behaviour that has broken before; no test framework
+ * or network needed. Exits non-zero on the first failed check.
+ *
+ * Build and run from the repository root (org.json on the classpath):
+ *
+ *   javac -cp "lib/*" -d build *.java tests/*.java
+ *   java -cp "build:lib/*" PixelCheckTests
+ *
+ * Caches live in a fresh temporary directory; the LLM and frame caches are
+ * off so no check depends on earlier runs.
+ */
+public class PixelCheckTests {
+
+    private static int checks;
+
+    public static void main(String[] args) throws Exception {
+        // Before PixelCheckComponentMapper initializes its caches
+        System.setProperty("pixelcheck.cache.dir", Files.createTempDirectory("pixelcheck-tests").toString());
+        System.setProperty("pixelcheck.llmCache.enabled", "false");
+        System.setProperty("pixelcheck.frameCache.enabled", "false");
+
+        batchTrustsFigmaVersions();
+        truncatedChunkMakesMergeIncomplete();
+        cacheKeysSeparateLlmClients();
+        limiterHoldsUnderMixedLengths();
+        compactCellsEscapeReferences();
+        keywordsMatchWholeWords();
+        System.out.println("✓ " + checks + " checks passed");
+    }
+
+    /**
+     * --batch through PixelCheckComponentMapper must apply the batch version
+     * TTL to the Figma cache the mapper already created
+     */
+    static void batchTrustsFigmaVersions() throws Exception {
+        FigmaFileCache cache = PixelCheckComponentMapper.figmaCache();
+        check(cache != null && cache.getVersionTtlSeconds() == 0, "version checks are not trusted by default");
+
+        // Without a manifest the batch only prints its usage
+        PixelCheckComponentMapper.main(new String[] { "--batch" });
+        check(cache.getVersionTtlSeconds() == 300, "--batch trusts version checks for 5 minutes");
+        cache.rememberVersion("abc", "token", "v1");
+        check("v1".equals(cache.recentVersion("abc", "token")), "--batch serves a recent version without asking");
+    }
+
+    /**
+     * One truncated chunk of a two-chunk inventory must keep the merged
+     * analysis out of the frame store
+     */
+    static void truncatedChunkMakesMergeIncomplete() {
+        JSONObject first = analysis("1:1", "1:2");
+        JSONObject second = analysis("2:1").put("truncated", true);
+
+        JSONObject merged = PixelCheckComponentMapper.mergeChunkAnalyses("ios", Arrays.asList(first, second));
+        check(merged.getJSONArray("components").length() == 3, "merged keeps every parsed component");
+        check(merged.optBoolean("truncated", false), "merged carries the chunk's truncated flag");
+        check(!PixelCheckComponentMapper.isComplete(merged), "truncated merge is not complete");
+        check(PixelCheckComponentMapper.isComplete(
+                PixelCheckComponentMapper.mergeChunkAnalyses("ios", Arrays.asList(first, analysis("2:1")))),
+                "merge of whole chunks is complete");
+
+        JSONObject failed = new JSONObject().put("platform", "ios").put("components", new JSONArray())
+                .put("errors", new JSONArray().put(new JSONObject().put("part", 2).put("error", "timeout")));
+        JSONObject withErrors = PixelCheckComponentMapper.mergeChunkAnalyses("ios", Arrays.asList(first, failed));
+        check(withErrors.getJSONArray("errors").length() == 1, "merged carries nested chunk errors");
+        check(!PixelCheckComponentMapper.isComplete(withErrors), "merge with errors is not complete");
+    }
+
+    /**
+     * The same payload sent to the stub and to QuickML must not share a
+     * cached response
+     */
+    static void cacheKeysSeparateLlmClients() {
+        JSONObject payload = new JSONObject().put("model", "m").put("prompt", "p").put("max_tokens", 10);
+        String quickMl = QuickMLClient.forEndpoint("https://example.com/llm/chat").identity();
+        String stub = QuickMLClient.forEndpoint("http://127.0.0.1:1234/llm/chat", "llm-stub").identity();
+        check(!quickMl.equals(stub), "stub and QuickML have different identities");
+        check(!LlmResponseCache.key(quickMl, payload).equals(LlmResponseCache.key(stub, payload)),
+                "cache keys include the client identity");
+        JSONObject reordered = new JSONObject(payload.toString());
+        check(LlmResponseCache.key(stub, payload).equals(LlmResponseCache.key(stub, reordered)),
+                "cache keys stay stable for one client");
+    }
+
+    /**
+     * Short answers mixed with long completions at a steady load must not
+     * read as congestion, while a real slowdown still shrinks the limit
+     */
+    static void limiterHoldsUnderMixedLengths() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 8, 1, 32, 2.0, 0.5);
+        Random random = new Random(7);
+        long[] clock = { 0 };
+
+        // One in ten responses is a 20x longer completion
+        simulateLoad(limiter, random, clock, 4000, 1);
+        double steady = limiter.getLimit();
+        check(steady >= 16, "limit grows under mixed-length responses (was " + steady + ")");
+
+        simulateLoad(limiter, random, clock, 400, 4);
+        check(limiter.getLimit() < steady, "limit shrinks when every response gets 4x slower");
+    }
+
+    /**
+     * Keeps the limiter full and completes one request at a time on a
+     * simulated clock
+     */
+    private static void simulateLoad(AdaptiveConcurrencyLimiter limiter, Random random, long[] clock,
+            int requests, int slowdown) throws Exception {
+        int held = 0;
+        for (int i = 0; i < requests; i++) {
+            while (held < (int) limiter.getLimit()) {
+                limiter.acquire();
+                held++;
+            }
+            long millis = (random.nextInt(10) == 0 ? 8000 : 400) * slowdown;
+            long latency = TimeUnit.MILLISECONDS.toNanos(millis + random.nextInt((int) millis / 10));
+            clock[0] += latency / held;
+            limiter.onSuccess(clock[0] - latency, clock[0]);
+            held--;
+        }
+        while (held-- > 0) {
+            limiter.onIgnored(0);
+        }
+    }
+
+    /**
+     * Text containing $n or two literal quotes must not read as a
+     * dictionary reference or an empty string
+     */
+    static void compactCellsEscapeReferences() {
+        JSONArray rows = new JSONArray();
+        for (String text : new String[] { "$1", "Pay $1 now", "\"\"", "" }) {
+            rows.put(new JSONObject().put("id", "1:" + rows.length()).put("text", text));
+        }
+        StringBuilder out = new StringBuilder();
+        PromptSerializer.appendCompact(out, new JSONObject().put("components", rows));
+        String[] lines = out.toString().split("\n");
+        check(lines[1].equals("1:0|\\$1"), "leading $ is escaped: " + lines[1]);
+        check(lines[2].equals("1:1|Pay \\$1 now"), "inner $ is escaped: " + lines[2]);
+        check(lines[3].equals("1:2|\\\"\\\""), "literal quotes are escaped: " + lines[3]);
+        check(lines[4].equals("1:3|\"\""), "empty string is \"\": " + lines[4]);
+    }
+
+    /**
+     * Control and container keywords must not match inside longer words
+     */
+    static void keywordsMatchWholeWords() {
+        check(FigmaComponentExtractor.words("TabBar/Active_2").equals("tab bar active 2"), "camelCase and / split");
+        check(FigmaComponentExtractor.words("HTMLInput-field").equals("html input field"), "acronyms split");
+
+        JSONArray layers = new JSONArray();
+        for (String name : new String[] { "Table", "Octagon", "Fabric", "Tab Bar", "tabs", "Primary CTA",
+                "fabAdd", "emailTextField", "search_bar", "Searchbar" }) {
+            layers.put(new JSONObject().put("id", "2:" + layers.length()).put("name", name).put("type", "FRAME"));
+        }
+        JSONObject screen = new JSONObject().put("id", "1:1").put("name", "Screen").put("type", "FRAME")
+                .put("children", layers);
+        JSONObject page = new JSONObject().put("id", "0:1").put("name", "Page").put("type", "CANVAS")
+                .put("children", new JSONArray().put(screen));
+        FigmaComponentExtractor.Inventory inventory = FigmaComponentExtractor.extract(FigmaNode.fromJSON(
+                new JSONObject().put("id", "0:0").put("type", "DOCUMENT").put("children", new JSONArray().put(page))));
+
+        Map<String, String> kinds = new HashMap<>();
+        for (FigmaComponentExtractor.Component component : inventory.getComponents()) {
+            kinds.put(component.getName(), component.getKind());
+        }
+        check(!kinds.containsKey("Table"), "\"tab\" does not match Table");
+        check(!kinds.containsKey("Octagon"), "\"cta\" does not match Octagon");
+        check(!kinds.containsKey("Fabric"), "\"fab\" does not match Fabric");
+        check("tab_bar".equals(kinds.get("Tab Bar")), "two-word keyword matches");
+        check("tab".equals(kinds.get("tabs")), "plural matches");
+        check("button".equals(kinds.get("Primary CTA")), "cta matches as a word");
+        check("button".equals(kinds.get("fabAdd")), "camelCase word matches");
+        check("text_field".equals(kinds.get("emailTextField")), "camelCase two-word keyword matches");
+        check("search".equals(kinds.get("search_bar")) && "search".equals(kinds.get("Searchbar")), "search bars");
+    }
+
+    private static JSONObject analysis(String... ids) {
+        JSONArray components = new JSONArray();
+        for (String id : ids) {
+            components.put(new JSONObject().put("id", id).put("type", "button").put("name", "Button " + id));
+        }
+        return new JSONObject().put("platform", "ios").put("components", components);
+    }
+
+    static void check(boolean condition, String description) {
+        checks++;
+        if (!condition) {
+            System.err.println("❌ " + description);
+            System.exit(1);
+        }
+    }
+}